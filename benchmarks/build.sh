@@ -0,0 +1,12 @@
+#!/bin/bash
+# Installs the compiler into the local Maven repository, then builds benchmarks/target/benchmarks.jar against it.
+# The root pom packages the compiler jar and is not an aggregator, so `mvn verify` from the root never compiles
+# the benchmarks. Run this script after changing the compiler's public API to check they still build.
+# Usage: benchmarks/build.sh
+
+set -e
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+
+mvn -B -q -f "$DIR"/../pom.xml install -DskipTests
+mvn -B -q -f "$DIR"/pom.xml package
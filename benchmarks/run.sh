@@ -0,0 +1,14 @@
+#!/bin/bash
+# Builds the compiler and the benchmarks, then runs JMH with the GC profiler.
+# Results are written to benchmarks/results/<name>.json so runs can be diffed between releases.
+# Usage: benchmarks/run.sh [NAME] [JMH OPTION]...
+
+set -e
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+NAME=${1:-$(git -C "$DIR" describe --tags --always --dirty)}
+
+"$DIR"/build.sh
+
+mkdir -p "$DIR"/results
+java -jar "$DIR"/target/benchmarks.jar -prof gc -rf json -rff "$DIR"/results/"$NAME".json "${@:2}"
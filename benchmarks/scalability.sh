@@ -0,0 +1,13 @@
+#!/bin/bash
+# Builds the compiler and the benchmarks, then compiles generated programs from 1 KB to 100 MB and fails when
+# time or peak heap grows faster than linearly with the input size.
+# The largest inputs need a large heap, set it with HEAP (default 48g) or pass --max-size to stop earlier.
+# Usage: benchmarks/scalability.sh [HARNESS OPTION]...
+
+set -e
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+
+"$DIR"/build.sh
+
+java -Xmx"${HEAP:-48g}" -cp "$DIR"/target/benchmarks.jar com.github.bechernie.benchmarks.ScalabilityHarness "$@"
@@ -0,0 +1,30 @@
+package com.github.bechernie.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class DiscardingChannel implements WritableByteChannel {
+
+    private long written = 0;
+
+    @Override
+    public int write(ByteBuffer source) {
+        final var remaining = source.remaining();
+        source.position(source.limit());
+        written += remaining;
+        return remaining;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
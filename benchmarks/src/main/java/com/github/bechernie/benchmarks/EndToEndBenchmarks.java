@@ -0,0 +1,65 @@
+package com.github.bechernie.benchmarks;
+
+import com.github.bechernie.Main;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmarks {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int depth;
+
+    @Param({"FLAT", "PARENTHESIZED"})
+    public Programs.Style style;
+
+    @Param({"1", "1000"})
+    public int functions;
+
+    private String source;
+    private Main.CompileOptions optionsO0;
+    private Main.CompileOptions optionsO1;
+
+    @Setup
+    public void setUp() throws ParseException {
+        source = Programs.generate(depth, style, functions);
+        optionsO0 = Main.parseCompileOptions(new DefaultParser().parse(Main.createOptions(), new String[]{"-O0"}));
+        optionsO1 = Main.parseCompileOptions(new DefaultParser().parse(Main.createOptions(), new String[]{"-O1"}));
+    }
+
+    @Benchmark
+    public long compileO0() {
+        return compile(optionsO0);
+    }
+
+    @Benchmark
+    public long compileO1() {
+        return compile(optionsO1);
+    }
+
+    private long compile(Main.CompileOptions compileOptions) {
+        final var channel = new DiscardingChannel();
+        if (Main.compile(source, compileOptions, channel) instanceof Main.Error(String message)) {
+            throw new IllegalStateException(message);
+        }
+        return channel.getWritten();
+    }
+}
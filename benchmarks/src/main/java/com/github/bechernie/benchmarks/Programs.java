@@ -0,0 +1,37 @@
+package com.github.bechernie.benchmarks;
+
+public class Programs {
+
+    public enum Style {
+        FLAT,
+        PARENTHESIZED
+    }
+
+    public static String generate(int depth, Style style) {
+        return generate(depth, style, 1);
+    }
+
+    public static String generate(int depth, Style style, int functions) {
+        final var program = new StringBuilder(depth * 4 + functions * 48);
+        for (var function = 1; function < functions; function++) {
+            appendFunction(program, "f" + function, depth / functions, style);
+        }
+        appendFunction(program, "main", depth - depth / functions * (functions - 1), style);
+        return program.toString();
+    }
+
+    private static void appendFunction(StringBuilder program, String name, int depth, Style style) {
+        program.append("int ").append(name).append("(void) {\n    return ");
+        for (var i = 0; i < depth; i++) {
+            program.append(i % 2 == 0 ? '-' : '~');
+            if (style == Style.PARENTHESIZED) {
+                program.append('(');
+            }
+        }
+        program.append('0');
+        if (style == Style.PARENTHESIZED) {
+            program.repeat(")", depth);
+        }
+        program.append(";\n}\n");
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.bechernie.benchmarks;
+
+import com.github.bechernie.Main;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScalabilityHarness {
+
+    private static final long MIN_SIZE = 1_000;
+    private static final long MAX_SIZE = 100_000_000;
+    private static final long REPEATED_BYTES = 10_000_000;
+    private static final int MAX_RUNS = 25;
+    private static final int WARMUP_RUNS = 5;
+    private static final long WARMUP_SIZE = 1_000_000;
+    private static final long MIN_HEAP_SIGNAL = 1_000_000;
+
+    record Measurement(long size, long nanos, long gcNanos, long peakHeap) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final var options = new Options();
+        options.addOption(null, "seed", true, "Seeds the workload generator (default 42)");
+        options.addOption(null, "shape", true, "Comma separated shapes to generate (default LONG,DEEP,WIDE,FUNCTIONS)");
+        options.addOption(null, "min-size", true, "Smallest input size in bytes (default 1000)");
+        options.addOption(null, "max-size", true, "Largest input size in bytes, sizes grow tenfold (default 100000000)");
+        options.addOption(null, "fit-points", true, "Fits growth over this many largest sizes (default 3)");
+        options.addOption(null, "max-exponent", true, "Fails when time outside garbage collection or peak heap grows faster than size^exponent (default 1.2)");
+        options.addOption("O", true, "Optimization level of the compiled pipeline (default 0)");
+        options.addOption(null, "min-heap", true, "Ignores sizes whose peak heap is below this many bytes when fitting heap growth (default 1000000)");
+
+        final CommandLine commandLine;
+        final Main.CompileOptions compileOptions;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+            compileOptions = Main.parseCompileOptions(new DefaultParser().parse(Main.createOptions(), new String[]{"-O" + commandLine.getOptionValue("O", "0")}));
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        final var seed = Long.parseLong(commandLine.getOptionValue("seed", "42"));
+        final var shapes = Arrays.stream(commandLine.getOptionValue("shape", "LONG,DEEP,WIDE,FUNCTIONS").split(","))
+                .map(WorkloadGenerator.Shape::valueOf)
+                .toList();
+        final var minSize = Long.parseLong(commandLine.getOptionValue("min-size", Long.toString(MIN_SIZE)));
+        final var maxSize = Long.parseLong(commandLine.getOptionValue("max-size", Long.toString(MAX_SIZE)));
+        final var fitPoints = Integer.parseInt(commandLine.getOptionValue("fit-points", "3"));
+        final var maxExponent = Double.parseDouble(commandLine.getOptionValue("max-exponent", "1.2"));
+        final var minHeap = Long.parseLong(commandLine.getOptionValue("min-heap", Long.toString(MIN_HEAP_SIGNAL)));
+
+        final var directory = Files.createTempDirectory("scalability");
+        final var failures = new ArrayList<String>();
+
+        try {
+            for (final var shape : shapes) {
+                final var input = directory.resolve(shape.name().toLowerCase() + ".c");
+
+                new WorkloadGenerator(seed, shape).generate(WARMUP_SIZE, input);
+                for (var i = 0; i < WARMUP_RUNS; i++) {
+                    compile(input, compileOptions);
+                }
+
+                final var measurements = new ArrayList<Measurement>();
+                for (var size = minSize; size <= maxSize; size *= 10) {
+                    new WorkloadGenerator(seed, shape).generate(size, input);
+                    final var measurement = measure(input, compileOptions);
+                    measurements.add(measurement);
+
+                    System.out.printf("%-9s %,15d bytes %,12.3f ms (%,10.3f ms gc) %,10.1f MB/s %,10.1f MB peak heap%n",
+                            shape,
+                            measurement.size(),
+                            measurement.nanos() / 1e6,
+                            measurement.gcNanos() / 1e6,
+                            measurement.size() / 1e6 / (measurement.nanos() / 1e9),
+                            measurement.peakHeap() / 1e6);
+                }
+
+                final var fitted = measurements.subList(Math.max(0, measurements.size() - fitPoints), measurements.size());
+                if (fitted.size() < 2) {
+                    System.out.println(shape + ": not enough sizes to fit growth");
+                    continue;
+                }
+
+                final var time = exponent(fitted.stream().map(m -> new double[]{m.size(), Math.max(1, m.nanos() - m.gcNanos())}).toList());
+                System.out.printf("%-9s time without gc ~ size^%.3f%n", shape, time);
+                if (time > maxExponent) {
+                    failures.add(shape + ": time grows as size^" + String.format("%.3f", time));
+                }
+
+                final var heapFitted = fitted.stream().filter(m -> m.peakHeap() >= minHeap).toList();
+                if (heapFitted.size() < 2) {
+                    System.out.println(shape + ": peak heap too small to fit growth");
+                    continue;
+                }
+
+                final var heap = exponent(heapFitted.stream().map(m -> new double[]{m.size(), m.peakHeap()}).toList());
+                System.out.printf("%-9s peak heap ~ size^%.3f%n", shape, heap);
+                if (heap > maxExponent) {
+                    failures.add(shape + ": peak heap grows as size^" + String.format("%.3f", heap));
+                }
+            }
+        } finally {
+            try (final var files = Files.list(directory)) {
+                for (final var file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.err.println("Super-linear growth: " + failure));
+            System.exit(1);
+        }
+    }
+
+    private static Measurement measure(Path input, Main.CompileOptions compileOptions) throws IOException {
+        final var size = Files.size(input);
+        final var runs = Math.clamp(REPEATED_BYTES / size, 1, MAX_RUNS);
+
+        var bestNanos = Long.MAX_VALUE;
+        var bestGcNanos = 0L;
+        for (var i = 0; i < runs; i++) {
+            final var gcStart = gcMillis();
+            final var start = System.nanoTime();
+            compile(input, compileOptions);
+            final var nanos = System.nanoTime() - start;
+            final var gcNanos = (gcMillis() - gcStart) * 1_000_000;
+
+            if (nanos - gcNanos < bestNanos - bestGcNanos) {
+                bestNanos = nanos;
+                bestGcNanos = gcNanos;
+            }
+        }
+
+        final var pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+
+        System.gc();
+        final var baseline = usedHeap(pools);
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        compile(input, compileOptions);
+        final var peak = pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        return new Measurement(size, bestNanos, bestGcNanos, Math.max(0, peak - baseline));
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+
+    private static long usedHeap(List<MemoryPoolMXBean> pools) {
+        return pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+
+    private static long compile(Path input, Main.CompileOptions compileOptions) throws IOException {
+        try (final var channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            final var program = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final var output = new DiscardingChannel();
+            if (Main.compile(program, compileOptions, output) instanceof Main.Error(String message)) {
+                throw new IllegalStateException(message);
+            }
+            return output.getWritten();
+        }
+    }
+
+    static double exponent(List<double[]> points) {
+        var sumX = 0.0;
+        var sumY = 0.0;
+        var sumXX = 0.0;
+        var sumXY = 0.0;
+        for (final var point : points) {
+            final var x = Math.log(point[0]);
+            final var y = Math.log(point[1]);
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+
+        final var n = points.size();
+        return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+    }
+}
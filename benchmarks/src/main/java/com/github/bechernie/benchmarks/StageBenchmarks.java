@@ -0,0 +1,130 @@
+package com.github.bechernie.benchmarks;
+
+import com.github.bechernie.Assembler;
+import com.github.bechernie.Codegen;
+import com.github.bechernie.Emitter;
+import com.github.bechernie.FixupInstructions;
+import com.github.bechernie.FusedBackend;
+import com.github.bechernie.Lexer;
+import com.github.bechernie.Parser;
+import com.github.bechernie.PeepholeOptimizer;
+import com.github.bechernie.RegisterAllocator;
+import com.github.bechernie.ReplacePseudo;
+import com.github.bechernie.TackyGen;
+import com.github.bechernie.TackyOptimizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmarks {
+
+    @Param({"10", "1000", "100000"})
+    public int depth;
+
+    @Param({"FLAT", "PARENTHESIZED"})
+    public Programs.Style style;
+
+    private String source;
+    private List<Lexer.Lexeme> lexemes;
+    private Parser.Program ast;
+    private TackyGen.Program tacky;
+    private TackyGen.Function tackyFunction;
+    private Codegen.Function codegen;
+    private ReplacePseudo.Result replaced;
+    private Codegen.Program fixedUp;
+    private Codegen.Function allocatedAndFixedUp;
+
+    @Setup
+    public void setUp() {
+        source = Programs.generate(depth, style);
+        lexemes = ((Lexer.Success) new Lexer().lex(source)).lexemes();
+        ast = ((Parser.Success) new Parser().parseProgram(lexemes)).program();
+        tacky = new TackyGen().emitTacky(ast);
+        tackyFunction = tacky.functions().getFirst();
+        codegen = new Codegen().emitAssembly(tackyFunction);
+        replaced = new ReplacePseudo().emitAssembly(codegen);
+        fixedUp = new Codegen.Program(List.of(new FixupInstructions().emitAssembly(replaced.function(), replaced.stackOffset())));
+
+        final var allocated = new RegisterAllocator().emitAssembly(codegen);
+        allocatedAndFixedUp = new FixupInstructions().emitAssembly(allocated.function(), allocated.stackOffset());
+    }
+
+    @Benchmark
+    public Lexer.LexResult lex() {
+        return new Lexer().lex(source);
+    }
+
+    @Benchmark
+    public Parser.ParseResult parse() {
+        return new Parser().parseProgram(lexemes);
+    }
+
+    @Benchmark
+    public TackyGen.Program tacky() {
+        return new TackyGen().emitTacky(ast);
+    }
+
+    @Benchmark
+    public TackyGen.Program optimize() {
+        return new TackyOptimizer(1).optimize(tacky);
+    }
+
+    @Benchmark
+    public Codegen.Function codegen() {
+        return new Codegen().emitAssembly(tackyFunction);
+    }
+
+    @Benchmark
+    public ReplacePseudo.Result replacePseudo() {
+        return new ReplacePseudo().emitAssembly(codegen);
+    }
+
+    @Benchmark
+    public ReplacePseudo.Result registerAllocation() {
+        return new RegisterAllocator().emitAssembly(codegen);
+    }
+
+    @Benchmark
+    public Codegen.Function fixup() {
+        return new FixupInstructions().emitAssembly(replaced.function(), replaced.stackOffset());
+    }
+
+    @Benchmark
+    public Codegen.Function peephole() {
+        return new PeepholeOptimizer().emitAssembly(allocatedAndFixedUp);
+    }
+
+    @Benchmark
+    public Codegen.Function fusedBackend() {
+        return new FusedBackend().emitAssembly(tackyFunction);
+    }
+
+    @Benchmark
+    public long emit() {
+        final var channel = new DiscardingChannel();
+        new Emitter().emit(channel, fixedUp);
+        return channel.getWritten();
+    }
+
+    @Benchmark
+    public Assembler.ObjectCode assemble() {
+        return new Assembler().assemble(fixedUp);
+    }
+}
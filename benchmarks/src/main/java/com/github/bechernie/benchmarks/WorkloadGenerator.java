@@ -0,0 +1,136 @@
+package com.github.bechernie.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class WorkloadGenerator {
+
+    public enum Shape {
+        LONG,
+        DEEP,
+        WIDE,
+        FUNCTIONS
+    }
+
+    private static final String PREFIX = "int main(void) {\n    return ";
+    private static final String SUFFIX = ";\n}\n";
+    private static final int MAX_CONSTANT_LENGTH = 10;
+    private static final int LINE_LENGTH = 120;
+    private static final int MAX_FUNCTION_OPERATORS = 64;
+
+    private final SplittableRandom random;
+    private final Shape shape;
+
+    private long written;
+    private int column;
+    private int last;
+
+    public WorkloadGenerator(long seed, Shape shape) {
+        this.random = new SplittableRandom(seed);
+        this.shape = shape;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: WorkloadGenerator <LONG|DEEP|WIDE|FUNCTIONS> <SIZE> <SEED> <OUTPUT>");
+            System.exit(1);
+        }
+
+        final var generator = new WorkloadGenerator(Long.parseLong(args[2]), Shape.valueOf(args[0]));
+        generator.generate(Long.parseLong(args[1]), Path.of(args[3]));
+    }
+
+    public void generate(long size, Path output) throws IOException {
+        try (final var writer = Files.newBufferedWriter(output, StandardCharsets.US_ASCII)) {
+            generate(size, writer);
+        }
+    }
+
+    public void generate(long size, Writer out) throws IOException {
+        written = 0;
+        column = 0;
+        last = ' ';
+
+        if (shape == Shape.FUNCTIONS) {
+            writeFunctions(out, size - PREFIX.length() - SUFFIX.length() - MAX_CONSTANT_LENGTH);
+        }
+
+        write(out, PREFIX);
+
+        final var budget = size - SUFFIX.length() - MAX_CONSTANT_LENGTH;
+        long open = 0;
+        while (written + open < budget) {
+            switch (shape) {
+                case LONG, FUNCTIONS -> writeOperator(out);
+                case DEEP -> {
+                    writeOperator(out);
+                    write(out, '(');
+                    open++;
+                }
+                case WIDE -> {
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            write(out, '(');
+                            open++;
+                        }
+                        case 1 -> writeWhitespace(out);
+                        default -> writeOperator(out);
+                    }
+                }
+            }
+        }
+
+        write(out, Integer.toString(random.nextInt(Integer.MAX_VALUE)));
+        for (var i = 0L; i < open; i++) {
+            write(out, ')');
+        }
+        write(out, SUFFIX);
+    }
+
+    private void writeFunctions(Writer out, long budget) throws IOException {
+        for (var function = 0; written < budget; function++) {
+            write(out, "int f" + function + "(void) {\n    return ");
+            for (var i = random.nextInt(MAX_FUNCTION_OPERATORS); i > 0; i--) {
+                writeOperator(out);
+            }
+            write(out, Integer.toString(random.nextInt(Integer.MAX_VALUE)));
+            write(out, SUFFIX);
+        }
+    }
+
+    private void writeOperator(Writer out) throws IOException {
+        final var operator = random.nextBoolean() ? '-' : '~';
+        if (operator == '-' && last == '-') {
+            write(out, ' ');
+        }
+        write(out, operator);
+    }
+
+    private void writeWhitespace(Writer out) throws IOException {
+        if (column >= LINE_LENGTH) {
+            write(out, '\n');
+            column = 0;
+        }
+        for (var i = random.nextInt(1, 9); i > 0; i--) {
+            write(out, ' ');
+        }
+    }
+
+    private void write(Writer out, String text) throws IOException {
+        out.write(text);
+        written += text.length();
+        column += text.length();
+        last = text.charAt(text.length() - 1);
+    }
+
+    private void write(Writer out, char c) throws IOException {
+        out.write(c);
+        written++;
+        column++;
+        last = c;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Thin client for the compiler daemon started with `--daemon <socket>`.
+ *
+ * Sends the working directory and the command line arguments as NUL-terminated strings, then prints the
+ * daemon's answer: a big-endian exit code followed by the length-prefixed stdout and stderr contents.
+ * Exits with 255 when nothing listens on the socket, and with 254 when the socket cannot be connected
+ * to for another reason. Both mean the request was never sent. Failures after connecting are reported
+ * on stderr and exit with 1, since the daemon may already have compiled the file.
+ */
+#include <arpa/inet.h>
+#include <errno.h>
+#include <limits.h>
+#include <signal.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+
+#define STALE 255
+#define UNREACHABLE 254
+#define FAILED 1
+
+static int write_fully(int fd, const char *buffer, size_t length) {
+    while (length > 0) {
+        ssize_t written = write(fd, buffer, length);
+        if (written <= 0) {
+            return -1;
+        }
+        buffer += written;
+        length -= written;
+    }
+    return 0;
+}
+
+static int read_fully(int fd, void *buffer, size_t length) {
+    char *cursor = buffer;
+    while (length > 0) {
+        ssize_t count = read(fd, cursor, length);
+        if (count <= 0) {
+            return -1;
+        }
+        cursor += count;
+        length -= count;
+    }
+    return 0;
+}
+
+static int read_int(int fd, uint32_t *value) {
+    if (read_fully(fd, value, sizeof(*value)) != 0) {
+        return -1;
+    }
+    *value = ntohl(*value);
+    return 0;
+}
+
+static int copy_section(int fd, int destination) {
+    uint32_t length;
+    char buffer[8192];
+
+    if (read_int(fd, &length) != 0) {
+        return -1;
+    }
+    while (length > 0) {
+        size_t chunk = length < sizeof(buffer) ? length : sizeof(buffer);
+        if (read_fully(fd, buffer, chunk) != 0 || write_fully(destination, buffer, chunk) != 0) {
+            return -1;
+        }
+        length -= chunk;
+    }
+    return 0;
+}
+
+int main(int argc, char **argv) {
+    struct sockaddr_un address = {.sun_family = AF_UNIX};
+    char working_directory[PATH_MAX];
+    uint32_t exit_code;
+    int fd;
+
+    if (argc < 2) {
+        fprintf(stderr, "usage: %s <SOCKET> [OPTION] <FILE>\n", argv[0]);
+        return UNREACHABLE;
+    }
+
+    signal(SIGPIPE, SIG_IGN);
+
+    if (getcwd(working_directory, sizeof(working_directory)) == NULL) {
+        return UNREACHABLE;
+    }
+
+    fd = socket(AF_UNIX, SOCK_STREAM, 0);
+    if (fd < 0) {
+        return UNREACHABLE;
+    }
+    strncpy(address.sun_path, argv[1], sizeof(address.sun_path) - 1);
+    if (connect(fd, (struct sockaddr *) &address, sizeof(address)) != 0) {
+        return errno == ECONNREFUSED || errno == ENOENT ? STALE : UNREACHABLE;
+    }
+
+    if (write_fully(fd, working_directory, strlen(working_directory) + 1) != 0) {
+        perror("mycc-client: sending the request");
+        return FAILED;
+    }
+    for (int i = 2; i < argc; i++) {
+        if (write_fully(fd, argv[i], strlen(argv[i]) + 1) != 0) {
+            perror("mycc-client: sending the request");
+            return FAILED;
+        }
+    }
+    shutdown(fd, SHUT_WR);
+
+    if (read_int(fd, &exit_code) != 0
+        || copy_section(fd, STDOUT_FILENO) != 0
+        || copy_section(fd, STDERR_FILENO) != 0) {
+        fprintf(stderr, "mycc-client: relaying the daemon's response failed\n");
+        return FAILED;
+    }
+
+    close(fd);
+    return (int) exit_code;
+}
@@ -1,3 +1,49 @@
 #!/bin/bash
 
-java -jar "$(dirname "$0")"/target/my-c-compiler-1.0-SNAPSHOT-jar-with-dependencies.jar "$@"
+DIR="$(dirname "$0")"
+JAR="$DIR"/target/my-c-compiler-1.0-SNAPSHOT-jar-with-dependencies.jar
+CLIENT_SOURCE="$DIR"/client/mycc-client.c
+CLIENT="$DIR"/target/mycc-client
+
+# Set MYCC_NO_DAEMON to run every compilation in a fresh JVM.
+if [ -n "$MYCC_NO_DAEMON" ]; then
+    exec java -jar "$JAR" "$@"
+fi
+
+# --watch keeps running and is only understood by a JVM of its own, never by the daemon.
+for ARGUMENT in "$@"; do
+    if [ "$ARGUMENT" = "--watch" ]; then
+        exec java -jar "$JAR" "$@"
+    fi
+done
+
+# One daemon per build of the jar, so a rebuilt compiler never talks to a stale JVM.
+SOCKET="${MYCC_SOCKET:-${XDG_RUNTIME_DIR:-/tmp}/mycc-$(id -u)-$(stat -c %Y "$JAR").sock}"
+
+if [ ! -x "$CLIENT" ] || [ "$CLIENT_SOURCE" -nt "$CLIENT" ]; then
+    gcc -O2 -o "$CLIENT" "$CLIENT_SOURCE" || exec java -jar "$JAR" "$@"
+fi
+
+if [ ! -S "$SOCKET" ]; then
+    nohup java -jar "$JAR" --daemon "$SOCKET" > /dev/null 2>&1 &
+    for _ in $(seq 100); do
+        [ -S "$SOCKET" ] && break
+        sleep 0.05
+    done
+fi
+
+"$CLIENT" "$SOCKET" "$@"
+STATUS=$?
+
+# Nothing listens on the socket: drop it and compile in this process instead.
+if [ "$STATUS" -eq 255 ]; then
+    rm -f "$SOCKET"
+    exec java -jar "$JAR" "$@"
+fi
+
+# The socket could not be connected to for another reason: keep it and compile in this process.
+if [ "$STATUS" -eq 254 ]; then
+    exec java -jar "$JAR" "$@"
+fi
+
+exit "$STATUS"
@@ -0,0 +1,134 @@
+package com.github.bechernie;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Assembler {
+
+    public record Symbol(String name, int offset, int size) {
+    }
+
+    public record ObjectCode(byte[] text, List<Symbol> symbols) {
+    }
+
+    private static final int RBP = 5;
+    private static final int RSP = 4;
+
+    private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+    public ObjectCode assemble(Codegen.Program program) {
+        final var symbols = new ArrayList<Symbol>(program.functions().size());
+
+        for (final var function : program.functions()) {
+            final var offset = text.size();
+            emitBytes(0x55);
+            emitBytes(0x48, 0x89, 0xE5);
+            function.instructions().forEach(this::emitInstruction);
+            symbols.add(new Symbol(function.name(), offset, text.size() - offset));
+        }
+
+        return new ObjectCode(text.toByteArray(), symbols);
+    }
+
+    private void emitInstruction(Codegen.Instruction instruction) {
+        switch (instruction) {
+            case Codegen.Mov(Codegen.Operand source, Codegen.Operand destination) -> emitMov(source, destination);
+            case Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand) -> {
+                final var extension = switch (operator) {
+                    case Codegen.Neg _ -> 3;
+                    case Codegen.Not _ -> 2;
+                };
+                emitModRm(0xF7, extension, operand);
+            }
+            case Codegen.AllocateStack(int size) -> {
+                if (size >= Byte.MIN_VALUE && size <= Byte.MAX_VALUE) {
+                    emitBytes(0x48, 0x83, 0xC0 | (5 << 3) | RSP, size & 0xFF);
+                } else {
+                    emitBytes(0x48, 0x81, 0xC0 | (5 << 3) | RSP);
+                    emitInt(size);
+                }
+            }
+            case Codegen.Ret _ -> {
+                emitBytes(0x48, 0x89, 0xEC);
+                emitBytes(0x5D);
+                emitBytes(0xC3);
+            }
+        }
+    }
+
+    private void emitMov(Codegen.Operand source, Codegen.Operand destination) {
+        switch (source) {
+            case Codegen.Imm(int value) -> {
+                if (destination instanceof Codegen.Register(Codegen.Reg reg)) {
+                    final var number = registerNumber(reg);
+                    if (number >= 8) {
+                        emitBytes(0x41);
+                    }
+                    emitBytes(0xB8 + (number & 7));
+                } else {
+                    emitModRm(0xC7, 0, destination);
+                }
+                emitInt(value);
+            }
+            case Codegen.Register(Codegen.Reg reg) -> emitModRm(0x89, registerNumber(reg), destination);
+            case Codegen.Stack _ -> {
+                if (!(destination instanceof Codegen.Register(Codegen.Reg reg))) {
+                    throw new IllegalStateException("Unexpected memory to memory mov: " + source + ", " + destination);
+                }
+                emitModRm(0x8B, registerNumber(reg), source);
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + source);
+        }
+    }
+
+    private void emitModRm(int opcode, int reg, Codegen.Operand operand) {
+        switch (operand) {
+            case Codegen.Register(Codegen.Reg rm) -> {
+                final var number = registerNumber(rm);
+                emitRex(reg, number);
+                emitBytes(opcode, 0xC0 | ((reg & 7) << 3) | (number & 7));
+            }
+            case Codegen.Stack(int offset) -> {
+                emitRex(reg, RBP);
+                if (offset >= Byte.MIN_VALUE && offset <= Byte.MAX_VALUE) {
+                    emitBytes(opcode, 0x40 | ((reg & 7) << 3) | RBP, offset & 0xFF);
+                } else {
+                    emitBytes(opcode, 0x80 | ((reg & 7) << 3) | RBP);
+                    emitInt(offset);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + operand);
+        }
+    }
+
+    private void emitRex(int reg, int rm) {
+        if (reg >= 8 || rm >= 8) {
+            emitBytes(0x40 | (reg >= 8 ? 0x04 : 0) | (rm >= 8 ? 0x01 : 0));
+        }
+    }
+
+    private int registerNumber(Codegen.Reg reg) {
+        return switch (reg) {
+            case Codegen.AX _ -> 0;
+            case Codegen.CX _ -> 1;
+            case Codegen.DX _ -> 2;
+            case Codegen.SI _ -> 6;
+            case Codegen.DI _ -> 7;
+            case Codegen.R8 _ -> 8;
+            case Codegen.R9 _ -> 9;
+            case Codegen.R10 _ -> 10;
+            case Codegen.R11 _ -> 11;
+        };
+    }
+
+    private void emitBytes(int... bytes) {
+        for (final var value : bytes) {
+            text.write(value);
+        }
+    }
+
+    private void emitInt(int value) {
+        emitBytes(value & 0xFF, (value >>> 8) & 0xFF, (value >>> 16) & 0xFF, (value >>> 24) & 0xFF);
+    }
+}
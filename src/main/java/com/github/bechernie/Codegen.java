@@ -5,10 +5,10 @@ import java.util.List;
 
 public class Codegen {
 
-    public sealed interface Program {
+    public record Program(List<Function> functions) {
     }
 
-    public record Function(String name, List<Instruction> instructions) implements Program {
+    public record Function(String name, List<Instruction> instructions) {
     }
 
     public sealed interface Instruction {
@@ -44,7 +44,7 @@ public class Codegen {
     public record Register(Reg reg) implements Operand {
     }
 
-    public record Pseudo(String identifier) implements Operand {
+    public record Pseudo(int identifier) implements Operand {
     }
 
     public record Stack(int size) implements Operand {
@@ -56,14 +56,36 @@ public class Codegen {
     public record AX() implements Reg {
     }
 
+    public record CX() implements Reg {
+    }
+
+    public record DX() implements Reg {
+    }
+
+    public record SI() implements Reg {
+    }
+
+    public record DI() implements Reg {
+    }
+
+    public record R8() implements Reg {
+    }
+
+    public record R9() implements Reg {
+    }
+
     public record R10() implements Reg {
     }
 
+    public record R11() implements Reg {
+    }
+
     public Program emitAssembly(TackyGen.Program program) {
-        return switch (program) {
-            case TackyGen.Function(String name, List<TackyGen.Instruction> body) ->
-                    new Function(name, emitAssembly(body));
-        };
+        return new Program(program.functions().stream().map(this::emitAssembly).toList());
+    }
+
+    public Function emitAssembly(TackyGen.Function function) {
+        return new Function(function.name(), emitAssembly(function.body()));
     }
 
     private List<Instruction> emitAssembly(List<TackyGen.Instruction> instructions) {
@@ -81,13 +103,15 @@ public class Codegen {
                             new Mov(convertVal(source), convertVal(destination)),
                             new Unary(convertUnaryOperator(operator), convertVal(destination))
                     );
+            case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) ->
+                    List.of(new Mov(convertVal(source), convertVal(destination)));
         };
     }
 
     private Operand convertVal(TackyGen.Val val) {
         return switch (val) {
             case TackyGen.Constant(int value) -> new Imm(value);
-            case TackyGen.Var(String identifier) -> new Pseudo(identifier);
+            case TackyGen.Var(int identifier) -> new Pseudo(identifier);
         };
     }
 
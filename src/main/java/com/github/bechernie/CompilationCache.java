@@ -0,0 +1,178 @@
+package com.github.bechernie;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompilationCache {
+
+    public record Stats(int hits, int misses, int stores, int evictions) {
+    }
+
+    private record Entry(Path path, long size, FileTime lastModified) {
+    }
+
+    private static final String ENTRY_SUFFIX = ".out";
+
+    private static final String COMPILER_VERSION = compilerVersion();
+
+    private final Path directory;
+    private final long maxSize;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger stores = new AtomicInteger();
+    private final AtomicInteger evictions = new AtomicInteger();
+
+    public CompilationCache(Path directory, long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+    }
+
+    public String key(CharSequence preprocessed, String options) {
+        return key(preprocessed.toString().getBytes(StandardCharsets.UTF_8), options);
+    }
+
+    public String key(byte[] preprocessed, String options) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(preprocessed);
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean restore(String key, Path destination) throws IOException {
+        final var entry = entryPath(key);
+
+        try {
+            Files.copy(entry, destination, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        return true;
+    }
+
+    public boolean restore(String key, WritableByteChannel destination) throws IOException {
+        final var entry = entryPath(key);
+
+        try (final var channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            var position = 0L;
+            final var size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, destination);
+            }
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        return true;
+    }
+
+    public void store(String key, Path artifact) throws IOException {
+        final var temporary = createTemporary(key);
+
+        try {
+            Files.copy(artifact, temporary, StandardCopyOption.REPLACE_EXISTING);
+            commit(key, temporary);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public Path createTemporary(String key) throws IOException {
+        return Files.createTempFile(directory, key, ".tmp");
+    }
+
+    public void commit(String key, Path temporary) throws IOException {
+        Files.move(temporary, entryPath(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        stores.incrementAndGet();
+        evict();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), stores.get(), evictions.get());
+    }
+
+    private void evict() throws IOException {
+        final var entries = new ArrayList<Entry>();
+        var totalSize = 0L;
+
+        try (final var paths = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (final var path : paths) {
+                try {
+                    final var entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path));
+                    entries.add(entry);
+                    totalSize += entry.size();
+                } catch (NoSuchFileException e) {
+                    // Evicted concurrently on purpose
+                }
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(Entry::lastModified));
+
+        for (final var entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            if (Files.deleteIfExists(entry.path())) {
+                evictions.incrementAndGet();
+            }
+            totalSize -= entry.size();
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static String compilerVersion() {
+        final var version = CompilationCache.class.getPackage().getImplementationVersion();
+
+        try {
+            final var location = Path.of(CompilationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return version + "-" + Files.getLastModifiedTime(location).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
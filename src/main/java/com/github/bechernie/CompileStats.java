@@ -0,0 +1,208 @@
+package com.github.bechernie;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompileStats {
+
+    public record Phase(String name, int runs, long wallNanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    @Name("com.github.bechernie.CompilePhase")
+    @Label("Compile Phase")
+    @Category("My C Compiler")
+    static class PhaseEvent extends Event {
+
+        @Label("File")
+        String file;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("CPU Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpuTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    public final class PhaseScope implements AutoCloseable {
+
+        private final String name;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long wallStart;
+        private final long cpuStart;
+        private final long allocatedStart;
+
+        private PhaseScope(String name) {
+            this.name = name;
+            this.event.begin();
+            this.wallStart = System.nanoTime();
+            this.cpuStart = THREADS.getCurrentThreadCpuTime();
+            this.allocatedStart = THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            final var wallNanos = System.nanoTime() - wallStart;
+            final var cpuNanos = difference(THREADS.getCurrentThreadCpuTime(), cpuStart);
+            final var allocatedBytes = difference(THREADS.getCurrentThreadAllocatedBytes(), allocatedStart);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = file;
+                event.phase = name;
+                event.cpuTime = cpuNanos;
+                event.allocated = allocatedBytes;
+                event.commit();
+            }
+
+            record(new Phase(name, 1, wallNanos, cpuNanos, allocatedBytes));
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final String file;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    public CompileStats(String file) {
+        this.file = file;
+    }
+
+    public PhaseScope phase(String name) {
+        return new PhaseScope(name);
+    }
+
+    public void count(String name, long value) {
+        counts.put(name, value);
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void printTable(PrintStream out) {
+        out.println("Statistics for " + file);
+        out.printf("%-20s %6s %12s %12s %16s%n", "Phase", "Runs", "Wall (ms)", "CPU (ms)", "Allocated (KiB)");
+        final var phases = getPhases();
+        for (final var phase : phases) {
+            out.printf("%-20s %6d %12.3f %12s %16s%n",
+                    phase.name(),
+                    phase.runs(),
+                    phase.wallNanos() / 1e6,
+                    phase.cpuNanos() < 0 ? "n/a" : String.format("%.3f", phase.cpuNanos() / 1e6),
+                    phase.allocatedBytes() < 0 ? "n/a" : String.format("%.1f", phase.allocatedBytes() / 1024.0));
+        }
+        counts.forEach((name, value) -> out.printf("%-20s %19d%n", name, value));
+        if (phases.stream().anyMatch(phase -> phase.runs() > 1)) {
+            out.println("Phases with several runs report the sum over all runs, runs on parallel workers can add up to more than the enclosing phase");
+        }
+    }
+
+    public void printJson(PrintStream out) {
+        final var json = new StringBuilder();
+        json.append("{\"file\":\"").append(escape(file)).append("\",\"phases\":[");
+        final var phases = getPhases();
+        for (var i = 0; i < phases.size(); i++) {
+            final var phase = phases.get(i);
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"name\":\"").append(phase.name())
+                    .append("\",\"runs\":").append(phase.runs())
+                    .append(",\"wallNanos\":").append(phase.wallNanos())
+                    .append(",\"cpuNanos\":").append(phase.cpuNanos() < 0 ? "null" : phase.cpuNanos())
+                    .append(",\"allocatedBytes\":").append(phase.allocatedBytes() < 0 ? "null" : phase.allocatedBytes())
+                    .append('}');
+        }
+        json.append("],\"counts\":{");
+        var first = true;
+        for (final var count : counts.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(count.getKey()).append("\":").append(count.getValue());
+            first = false;
+        }
+        json.append("}}");
+        out.println(json);
+    }
+
+    static long countNodes(Parser.Program program) {
+        var nodes = 0L;
+        for (final var function : program.functions()) {
+            nodes += 1 + countNodes(function.body());
+        }
+        return nodes;
+    }
+
+    private static long countNodes(Parser.Statement statement) {
+        return switch (statement) {
+            case Parser.Return(Parser.Expression expression) -> 1 + countNodes(expression);
+        };
+    }
+
+    private static long countNodes(Parser.Expression expression) {
+        var nodes = 0L;
+        var current = expression;
+        while (current instanceof Parser.Unary(Parser.UnaryOperator _, Parser.Expression inner)) {
+            nodes += 2;
+            current = inner;
+        }
+        return nodes + 1;
+    }
+
+    private synchronized void record(Phase phase) {
+        phases.merge(phase.name(), phase, (previous, next) -> new Phase(
+                previous.name(),
+                previous.runs() + next.runs(),
+                previous.wallNanos() + next.wallNanos(),
+                sum(previous.cpuNanos(), next.cpuNanos()),
+                sum(previous.allocatedBytes(), next.allocatedBytes())
+        ));
+    }
+
+    private static long sum(long first, long second) {
+        return first < 0 || second < 0 ? -1 : first + second;
+    }
+
+    private static long difference(long end, long start) {
+        return end < 0 || start < 0 ? -1 : end - start;
+    }
+
+    private static String escape(String value) {
+        final var escaped = new StringBuilder(value.length());
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConstantFolding implements TackyPass {
+
+    @Override
+    public List<TackyGen.Instruction> apply(List<TackyGen.Instruction> instructions) {
+        final var constants = new HashMap<Integer, Integer>();
+        final var folded = new ArrayList<TackyGen.Instruction>(instructions.size());
+
+        for (final var instruction : instructions) {
+            folded.add(switch (instruction) {
+                case TackyGen.Unary(TackyGen.UnaryOperator operator, TackyGen.Val source, TackyGen.Val destination) -> {
+                    if (resolve(source, constants) instanceof TackyGen.Constant(int value)) {
+                        yield define(new TackyGen.Copy(new TackyGen.Constant(fold(operator, value)), destination), constants);
+                    }
+                    yield define(instruction, constants);
+                }
+                case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) ->
+                        define(new TackyGen.Copy(resolve(source, constants), destination), constants);
+                case TackyGen.Return _ -> instruction;
+            });
+        }
+
+        return folded;
+    }
+
+    private TackyGen.Instruction define(TackyGen.Instruction instruction, Map<Integer, Integer> constants) {
+        switch (instruction) {
+            case TackyGen.Copy(TackyGen.Constant(int value), TackyGen.Var(int identifier)) ->
+                    constants.put(identifier, value);
+            case TackyGen.Copy(TackyGen.Val _, TackyGen.Var(int identifier)) -> constants.remove(identifier);
+            case TackyGen.Unary(TackyGen.UnaryOperator _, TackyGen.Val _, TackyGen.Var(int identifier)) ->
+                    constants.remove(identifier);
+            default -> {
+                // Defines nothing on purpose
+            }
+        }
+        return instruction;
+    }
+
+    private TackyGen.Val resolve(TackyGen.Val val, Map<Integer, Integer> constants) {
+        if (val instanceof TackyGen.Var(int identifier) && constants.containsKey(identifier)) {
+            return new TackyGen.Constant(constants.get(identifier));
+        }
+        return val;
+    }
+
+    private int fold(TackyGen.UnaryOperator operator, int value) {
+        return switch (operator) {
+            case TackyGen.Negate _ -> -value;
+            case TackyGen.BitwiseComplement _ -> ~value;
+        };
+    }
+}
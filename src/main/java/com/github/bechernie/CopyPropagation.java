@@ -0,0 +1,56 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CopyPropagation implements TackyPass {
+
+    @Override
+    public List<TackyGen.Instruction> apply(List<TackyGen.Instruction> instructions) {
+        final var copies = new HashMap<Integer, TackyGen.Val>();
+        final var sources = new HashSet<TackyGen.Val>();
+        final var propagated = new ArrayList<TackyGen.Instruction>(instructions.size());
+
+        for (final var instruction : instructions) {
+            propagated.add(switch (instruction) {
+                case TackyGen.Return(TackyGen.Val val) -> new TackyGen.Return(replace(val, copies));
+                case TackyGen.Unary(TackyGen.UnaryOperator operator, TackyGen.Val source, TackyGen.Val destination) -> {
+                    final var unary = new TackyGen.Unary(operator, replace(source, copies), destination);
+                    kill(destination, copies, sources);
+                    yield unary;
+                }
+                case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) -> {
+                    final var replaced = replace(source, copies);
+                    kill(destination, copies, sources);
+                    if (destination instanceof TackyGen.Var(int identifier) && !replaced.equals(destination)) {
+                        copies.put(identifier, replaced);
+                        sources.add(replaced);
+                    }
+                    yield new TackyGen.Copy(replaced, destination);
+                }
+            });
+        }
+
+        return propagated;
+    }
+
+    private TackyGen.Val replace(TackyGen.Val val, Map<Integer, TackyGen.Val> copies) {
+        if (val instanceof TackyGen.Var(int identifier)) {
+            return copies.getOrDefault(identifier, val);
+        }
+        return val;
+    }
+
+    private void kill(TackyGen.Val destination, Map<Integer, TackyGen.Val> copies, Set<TackyGen.Val> sources) {
+        if (destination instanceof TackyGen.Var(int identifier)) {
+            copies.remove(identifier);
+            if (sources.remove(destination)) {
+                copies.values().removeIf(destination::equals);
+            }
+        }
+    }
+}
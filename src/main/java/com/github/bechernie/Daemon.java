@@ -0,0 +1,136 @@
+package com.github.bechernie;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Daemon {
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final Path socketPath;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+
+    public Daemon(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    public void serve() throws IOException {
+        if (Files.exists(socketPath)) {
+            try (final var _ = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+                throw new IOException("Another daemon is already serving " + socketPath);
+            } catch (ConnectException e) {
+                Files.delete(socketPath);
+            }
+        }
+
+        var bound = false;
+        try (final var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             final var requests = Executors.newVirtualThreadPerTaskExecutor();
+             final var idleWatcher = Executors.newSingleThreadScheduledExecutor()) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            bound = true;
+
+            idleWatcher.scheduleWithFixedDelay(() -> closeIfIdle(server), 1, 1, TimeUnit.MINUTES);
+
+            while (true) {
+                final SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException e) {
+                    break;
+                }
+
+                activeRequests.incrementAndGet();
+                requests.submit(() -> handle(client));
+            }
+        } finally {
+            if (bound) {
+                Files.deleteIfExists(socketPath);
+            }
+        }
+    }
+
+    private void closeIfIdle(ServerSocketChannel server) {
+        if (activeRequests.get() == 0 && System.nanoTime() - lastActivity.get() > IDLE_TIMEOUT.toNanos()) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client) {
+            final var request = new String(Channels.newInputStream(client).readAllBytes(), StandardCharsets.UTF_8).split("\0");
+
+            final var out = new ByteArrayOutputStream();
+            final var err = new ByteArrayOutputStream();
+            final int exitCode;
+            try (final var outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+                 final var errStream = new PrintStream(err, true, StandardCharsets.UTF_8)) {
+                exitCode = run(request, outStream, errStream);
+            }
+
+            final var response = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+            response.writeInt(exitCode);
+            response.writeInt(out.size());
+            out.writeTo(response);
+            response.writeInt(err.size());
+            err.writeTo(response);
+            response.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lastActivity.set(System.nanoTime());
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    private int run(String[] request, PrintStream out, PrintStream err) {
+        final var options = Main.createOptions();
+
+        try {
+            final var commandLine = new DefaultParser().parse(options, Arrays.copyOfRange(request, 1, request.length));
+
+            return Main.run(commandLine, Path.of(request[0]), out, err);
+        } catch (ParseException e) {
+            err.println(e.getMessage());
+            Main.printHelp(options, out);
+
+            return 2;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace(err);
+
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace(err);
+
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DeadCodeElimination implements TackyPass {
+
+    @Override
+    public List<TackyGen.Instruction> apply(List<TackyGen.Instruction> instructions) {
+        var end = instructions.size();
+        for (var i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof TackyGen.Return) {
+                end = i + 1;
+                break;
+            }
+        }
+
+        final var live = new HashSet<Integer>();
+        final var kept = new ArrayList<TackyGen.Instruction>(end);
+
+        for (var i = end - 1; i >= 0; i--) {
+            final var instruction = instructions.get(i);
+            switch (instruction) {
+                case TackyGen.Return(TackyGen.Val val) -> {
+                    use(val, live);
+                    kept.add(instruction);
+                }
+                case TackyGen.Unary(TackyGen.UnaryOperator _, TackyGen.Val source, TackyGen.Val destination) -> {
+                    if (define(destination, live)) {
+                        use(source, live);
+                        kept.add(instruction);
+                    }
+                }
+                case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) -> {
+                    if (!source.equals(destination) && define(destination, live)) {
+                        use(source, live);
+                        kept.add(instruction);
+                    }
+                }
+            }
+        }
+
+        return kept.reversed();
+    }
+
+    private boolean define(TackyGen.Val destination, Set<Integer> live) {
+        return !(destination instanceof TackyGen.Var(int identifier)) || live.remove(identifier);
+    }
+
+    private void use(TackyGen.Val val, Set<Integer> live) {
+        if (val instanceof TackyGen.Var(int identifier)) {
+            live.add(identifier);
+        }
+    }
+}
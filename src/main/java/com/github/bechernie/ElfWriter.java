@@ -0,0 +1,138 @@
+package com.github.bechernie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ElfWriter {
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SECTION_HEADER_SIZE = 64;
+    private static final int SYMBOL_SIZE = 24;
+
+    private static final int SHT_PROGBITS = 1;
+    private static final int SHT_SYMTAB = 2;
+    private static final int SHT_STRTAB = 3;
+
+    private static final int SHF_ALLOC = 0x2;
+    private static final int SHF_EXECINSTR = 0x4;
+
+    private static final int TEXT_INDEX = 1;
+    private static final int STRTAB_INDEX = 4;
+    private static final int SECTION_COUNT = 6;
+
+    private record Section(int name, int type, long flags, int offset, int size, int link, int info, int alignment, int entrySize) {
+    }
+
+    public void write(String outputPath, Assembler.ObjectCode objectCode) {
+        final var sectionNames = new StringTable();
+        final var textName = sectionNames.add(".text");
+        final var noteName = sectionNames.add(".note.GNU-stack");
+        final var symtabName = sectionNames.add(".symtab");
+        final var strtabName = sectionNames.add(".strtab");
+        final var shstrtabName = sectionNames.add(".shstrtab");
+
+        final var symbolNames = new StringTable();
+        final var symbols = ByteBuffer.allocate(SYMBOL_SIZE * (objectCode.symbols().size() + 1)).order(ByteOrder.LITTLE_ENDIAN);
+        symbols.position(SYMBOL_SIZE);
+        for (final var symbol : objectCode.symbols()) {
+            symbols.putInt(symbolNames.add(symbol.name()));
+            symbols.put((byte) 0x12);
+            symbols.put((byte) 0);
+            symbols.putShort((short) TEXT_INDEX);
+            symbols.putLong(symbol.offset());
+            symbols.putLong(symbol.size());
+        }
+
+        final var text = objectCode.text();
+        final var textOffset = HEADER_SIZE;
+        final var strtabOffset = textOffset + text.length;
+        final var symtabOffset = align(strtabOffset + symbolNames.size(), 8);
+        final var shstrtabOffset = symtabOffset + symbols.capacity();
+        final var sectionHeadersOffset = align(shstrtabOffset + sectionNames.size(), 8);
+
+        final var sections = new Section[]{
+                new Section(0, 0, 0, 0, 0, 0, 0, 0, 0),
+                new Section(textName, SHT_PROGBITS, SHF_ALLOC | SHF_EXECINSTR, textOffset, text.length, 0, 0, 16, 0),
+                new Section(noteName, SHT_PROGBITS, 0, strtabOffset, 0, 0, 0, 1, 0),
+                new Section(symtabName, SHT_SYMTAB, 0, symtabOffset, symbols.capacity(), STRTAB_INDEX, 1, 8, SYMBOL_SIZE),
+                new Section(strtabName, SHT_STRTAB, 0, strtabOffset, symbolNames.size(), 0, 0, 1, 0),
+                new Section(shstrtabName, SHT_STRTAB, 0, shstrtabOffset, sectionNames.size(), 0, 0, 1, 0),
+        };
+
+        final var file = ByteBuffer.allocate(sectionHeadersOffset + SECTION_HEADER_SIZE * SECTION_COUNT).order(ByteOrder.LITTLE_ENDIAN);
+
+        file.put(new byte[]{0x7F, 'E', 'L', 'F', 2, 1, 1, 0});
+        file.position(16);
+        file.putShort((short) 1);
+        file.putShort((short) 62);
+        file.putInt(1);
+        file.putLong(0);
+        file.putLong(0);
+        file.putLong(sectionHeadersOffset);
+        file.putInt(0);
+        file.putShort((short) HEADER_SIZE);
+        file.putShort((short) 0);
+        file.putShort((short) 0);
+        file.putShort((short) SECTION_HEADER_SIZE);
+        file.putShort((short) SECTION_COUNT);
+        file.putShort((short) (SECTION_COUNT - 1));
+
+        file.put(textOffset, text);
+        file.put(strtabOffset, symbolNames.toByteArray());
+        file.put(symtabOffset, symbols.array());
+        file.put(shstrtabOffset, sectionNames.toByteArray());
+
+        file.position(sectionHeadersOffset);
+        for (final var section : sections) {
+            file.putInt(section.name());
+            file.putInt(section.type());
+            file.putLong(section.flags());
+            file.putLong(0);
+            file.putLong(section.offset());
+            file.putLong(section.size());
+            file.putInt(section.link());
+            file.putInt(section.info());
+            file.putLong(section.alignment());
+            file.putLong(section.entrySize());
+        }
+
+        try {
+            Files.write(Path.of(outputPath), file.array());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    private static class StringTable {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        StringTable() {
+            bytes.write(0);
+        }
+
+        int add(String value) {
+            final var offset = bytes.size();
+            bytes.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            bytes.write(0);
+            return offset;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -1,64 +1,182 @@
 package com.github.bechernie;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class Emitter {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] GLOBL = bytes("\t.globl ");
+    private static final byte[] LABEL_END = bytes(":\n");
+    private static final byte[] PROLOGUE = bytes("\tpushq\t%rbp\n\tmovq\t%rsp, %rbp\n");
+    private static final byte[] MOVL = bytes("\tmovl\t");
+    private static final byte[] RET = bytes("\tmovq\t%rbp, %rsp\n\tpopq\t%rbp\n\tret\n\n");
+    private static final byte[] SUBQ = bytes("\tsubq\t$");
+    private static final byte[] RSP_END = bytes(", %rsp\n");
+    private static final byte[] NEGL = bytes("\tnegl\t ");
+    private static final byte[] NOTL = bytes("\tnotl\t ");
+    private static final byte[] SEPARATOR = bytes(", ");
+    private static final byte[] RBP_END = bytes("(%rbp)");
+    private static final byte[] EAX = bytes("%eax");
+    private static final byte[] ECX = bytes("%ecx");
+    private static final byte[] EDX = bytes("%edx");
+    private static final byte[] ESI = bytes("%esi");
+    private static final byte[] EDI = bytes("%edi");
+    private static final byte[] R8D = bytes("%r8d");
+    private static final byte[] R9D = bytes("%r9d");
+    private static final byte[] R10D = bytes("%r10d");
+    private static final byte[] R11D = bytes("%r11d");
+    private static final byte[] NOTE_GNU_STACK = bytes(".section .note.GNU-stack,\"\",@progbits\n");
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[11];
+    private WritableByteChannel channel;
+
     public void emit(String outputPath, Codegen.Program assembly) {
-        try (final var printStream = new PrintStream(new FileOutputStream(outputPath))) {
-            switch (assembly) {
-                case Codegen.Function(String name, List<Codegen.Instruction> instructions) -> {
-                    printStream.println("\t.globl " + name);
-                    printStream.println(name + ":");
-                    printStream.println("\tpushq\t%rbp");
-                    printStream.println("\tmovq\t%rsp, %rbp");
-                    instructions.forEach(instruction -> printStream.println(emitInstruction(instruction)));
-                }
-            }
-            printStream.println(".section .note.GNU-stack,\"\",@progbits");
+        try (final var fileChannel = FileChannel.open(Path.of(outputPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            emit(fileChannel, assembly);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
-    private String emitInstruction(Codegen.Instruction instruction) {
-        return "\t" + switch (instruction) {
-            case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) ->
-                    "movl\t" + convertOperand(operand1) + ", " + convertOperand(operand2);
-            case Codegen.Ret _ -> """
-                    movq\t%rbp, %rsp
-                    \tpopq\t%rbp
-                    \tret
-                    """.stripIndent();
-            case Codegen.AllocateStack(int size) -> "subq\t$" + size + ", %rsp";
-            case Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand) ->
-                    convertUnaryOperator(operator) + "\t " + convertOperand(operand);
-        };
+    public void emit(WritableByteChannel channel, Codegen.Program assembly) {
+        this.channel = channel;
+        buffer.clear();
+
+        for (final var function : assembly.functions()) {
+            put(GLOBL);
+            put(bytes(function.name()));
+            put((byte) '\n');
+            put(bytes(function.name()));
+            put(LABEL_END);
+            put(PROLOGUE);
+            function.instructions().forEach(this::emitInstruction);
+        }
+        put(NOTE_GNU_STACK);
+
+        flush();
+        this.channel = null;
+    }
+
+    private void emitInstruction(Codegen.Instruction instruction) {
+        switch (instruction) {
+            case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) -> {
+                put(MOVL);
+                putOperand(operand1);
+                put(SEPARATOR);
+                putOperand(operand2);
+                put((byte) '\n');
+            }
+            case Codegen.Ret _ -> put(RET);
+            case Codegen.AllocateStack(int size) -> {
+                put(SUBQ);
+                putInt(size);
+                put(RSP_END);
+            }
+            case Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand) -> {
+                put(convertUnaryOperator(operator));
+                putOperand(operand);
+                put((byte) '\n');
+            }
+        }
     }
 
-    private String convertUnaryOperator(Codegen.UnaryOperator operator) {
+    private byte[] convertUnaryOperator(Codegen.UnaryOperator operator) {
         return switch (operator) {
-            case Codegen.Neg _ -> "negl";
-            case Codegen.Not _ -> "notl";
+            case Codegen.Neg _ -> NEGL;
+            case Codegen.Not _ -> NOTL;
         };
     }
 
-    private String convertOperand(Codegen.Operand operand) {
-        return switch (operand) {
-            case Codegen.Imm(int value) -> "$" + value;
-            case Codegen.Register(Codegen.Reg reg) -> convertRegister(reg);
-            case Codegen.Stack(int size) -> size + "(%rbp)";
+    private void putOperand(Codegen.Operand operand) {
+        switch (operand) {
+            case Codegen.Imm(int value) -> {
+                put((byte) '$');
+                putInt(value);
+            }
+            case Codegen.Register(Codegen.Reg reg) -> put(convertRegister(reg));
+            case Codegen.Stack(int size) -> {
+                putInt(size);
+                put(RBP_END);
+            }
             default -> throw new IllegalStateException("Unexpected value: " + operand);
-        };
+        }
     }
 
-    private String convertRegister(Codegen.Reg reg) {
+    private byte[] convertRegister(Codegen.Reg reg) {
         return switch (reg) {
-            case Codegen.AX _ -> "%eax";
-            case Codegen.R10 _ -> "%r10d";
+            case Codegen.AX _ -> EAX;
+            case Codegen.CX _ -> ECX;
+            case Codegen.DX _ -> EDX;
+            case Codegen.SI _ -> ESI;
+            case Codegen.DI _ -> EDI;
+            case Codegen.R8 _ -> R8D;
+            case Codegen.R9 _ -> R9D;
+            case Codegen.R10 _ -> R10D;
+            case Codegen.R11 _ -> R11D;
         };
     }
+
+    private void putInt(int value) {
+        var remaining = Math.abs((long) value);
+        var position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--position] = '-';
+        }
+        put(digits, position, digits.length - position);
+    }
+
+    private void put(byte value) {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+
+    private void put(byte[] bytes) {
+        put(bytes, 0, bytes.length);
+    }
+
+    private void put(byte[] bytes, int offset, int length) {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        if (length > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes, offset, length));
+            return;
+        }
+        buffer.put(bytes, offset, length);
+    }
+
+    private void flush() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) {
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
 }
@@ -0,0 +1,139 @@
+package com.github.bechernie;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class Fingerprints {
+
+    public enum Stage {
+        PREPROCESSED("preprocessed text"),
+        TOKENS("tokens"),
+        TACKY("TACKY");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Map<Stage, byte[]> digests = new EnumMap<>(Stage.class);
+    private Set<Path> dependencies;
+    private Stage unchangedStage;
+
+    public Fingerprints(Path file) {
+        this.dependencies = Set.of(file.toAbsolutePath().normalize());
+    }
+
+    public Set<Path> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(Set<Path> dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    public Stage getUnchangedStage() {
+        return unchangedStage;
+    }
+
+    public void begin() {
+        unchangedStage = null;
+    }
+
+    public void invalidate() {
+        digests.clear();
+    }
+
+    public boolean update(Stage stage, byte[] digest) {
+        if (Arrays.equals(digests.put(stage, digest), digest)) {
+            unchangedStage = stage;
+            return false;
+        }
+
+        return true;
+    }
+
+    public static byte[] digest(CharSequence text) {
+        return digest(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] digest(byte[] bytes) {
+        return newDigest().digest(bytes);
+    }
+
+    public static byte[] digest(TokenBuffer tokens, SymbolTable symbols) {
+        final var digest = newDigest();
+        final var scratch = new byte[8];
+
+        for (var i = 0; i < tokens.size(); i++) {
+            final var kind = tokens.kind(i);
+            final var payload = tokens.payload(i);
+
+            if (kind == Lexer.KIND_WORD) {
+                digest.update(symbols.spelling(payload).getBytes(StandardCharsets.UTF_8));
+            }
+            putInt(scratch, 0, kind);
+            putInt(scratch, 4, kind == Lexer.KIND_WORD ? 0 : payload);
+            digest.update(scratch);
+        }
+
+        return digest.digest();
+    }
+
+    public static byte[] digest(TackyGen.Program program) {
+        final var digest = newDigest();
+
+        try (final var outputStream = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            new TackyWriter().write(outputStream, program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return digest.digest();
+    }
+
+    public static Set<Path> readDependencies(Path dependencyFile) throws IOException {
+        final var rule = Files.readString(dependencyFile).replace("\\\n", " ");
+        final var dependencies = new LinkedHashSet<Path>();
+
+        for (final var dependency : rule.substring(rule.indexOf(':') + 1).trim().split("(?<!\\\\)\\s+")) {
+            if (!dependency.isEmpty()) {
+                dependencies.add(Path.of(dependency.replace("\\ ", " ")).toAbsolutePath().normalize());
+            }
+        }
+
+        return dependencies;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
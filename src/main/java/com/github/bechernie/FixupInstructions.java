@@ -5,14 +5,10 @@ import java.util.Collection;
 import java.util.List;
 
 public class FixupInstructions {
-    public Codegen.Program emitAssembly(Codegen.Program program, int stackOffset) {
-        return switch (program) {
-            case Codegen.Function(String name, List<Codegen.Instruction> instructions) -> {
-                final var newInstructions = new ArrayList<>(rewriteInvalidMovs(instructions));
-                newInstructions.addFirst(new Codegen.AllocateStack(stackOffset));
-                yield new Codegen.Function(name, newInstructions);
-            }
-        };
+    public Codegen.Function emitAssembly(Codegen.Function function, int stackOffset) {
+        final var newInstructions = new ArrayList<>(rewriteInvalidMovs(function.instructions()));
+        newInstructions.addFirst(new Codegen.AllocateStack(stackOffset));
+        return new Codegen.Function(function.name(), newInstructions);
     }
 
     private List<Codegen.Instruction> rewriteInvalidMovs(List<Codegen.Instruction> instructions) {
@@ -0,0 +1,32 @@
+package com.github.bechernie;
+
+import java.util.PriorityQueue;
+
+public class FrameLayout {
+
+    private static final int SLOT_SIZE = 4;
+    private static final int FRAME_ALIGNMENT = 16;
+
+    private record Occupied(int slot, int end) {
+    }
+
+    private final PriorityQueue<Occupied> occupied = new PriorityQueue<>((a, b) -> Integer.compare(a.end(), b.end()));
+    private final PriorityQueue<Integer> freeSlots = new PriorityQueue<>();
+
+    private int slotCount = 0;
+
+    public Codegen.Stack allocate(int start, int end) {
+        while (!occupied.isEmpty() && occupied.peek().end() < start) {
+            freeSlots.add(occupied.poll().slot());
+        }
+
+        final var slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.poll();
+        occupied.add(new Occupied(slot, end));
+
+        return new Codegen.Stack(-(slot + 1) * SLOT_SIZE);
+    }
+
+    public int frameSize() {
+        return (slotCount * SLOT_SIZE + FRAME_ALIGNMENT - 1) / FRAME_ALIGNMENT * FRAME_ALIGNMENT;
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FusedBackend {
+
+    private static final Codegen.Register AX = new Codegen.Register(new Codegen.AX());
+    private static final Codegen.Register R10 = new Codegen.Register(new Codegen.R10());
+    private static final Codegen.Neg NEG = new Codegen.Neg();
+    private static final Codegen.Not NOT = new Codegen.Not();
+    private static final Codegen.Ret RET = new Codegen.Ret();
+
+    private final IntIntMap lastUses = new IntIntMap();
+
+    private final IntIntMap stackSlotIndexes = new IntIntMap();
+
+    private final List<Codegen.Stack> stackSlots = new ArrayList<>();
+
+    private final FrameLayout frameLayout = new FrameLayout();
+
+    private int index;
+
+    public Codegen.Function emitAssembly(TackyGen.Function function) {
+        final var body = function.body();
+        computeLastUses(body);
+
+        final var instructions = new ArrayList<Codegen.Instruction>(body.size() * 3 + 1);
+        instructions.add(null);
+
+        for (index = 0; index < body.size(); index++) {
+            emitInstruction(body.get(index), instructions);
+        }
+
+        instructions.set(0, new Codegen.AllocateStack(frameLayout.frameSize()));
+        return new Codegen.Function(function.name(), instructions);
+    }
+
+    private void computeLastUses(List<TackyGen.Instruction> body) {
+        for (var i = 0; i < body.size(); i++) {
+            switch (body.get(i)) {
+                case TackyGen.Return(TackyGen.Val val) -> recordUse(val, i);
+                case TackyGen.Unary(TackyGen.UnaryOperator _, TackyGen.Val source, TackyGen.Val destination) -> {
+                    recordUse(source, i);
+                    recordUse(destination, i);
+                }
+                case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) -> {
+                    recordUse(source, i);
+                    recordUse(destination, i);
+                }
+            }
+        }
+    }
+
+    private void recordUse(TackyGen.Val val, int index) {
+        if (val instanceof TackyGen.Var(int identifier)) {
+            lastUses.put(identifier, index);
+        }
+    }
+
+    private void emitInstruction(TackyGen.Instruction instruction, List<Codegen.Instruction> instructions) {
+        switch (instruction) {
+            case TackyGen.Return(TackyGen.Val val) -> {
+                instructions.add(new Codegen.Mov(convertVal(val), AX));
+                instructions.add(RET);
+            }
+            case TackyGen.Unary(TackyGen.UnaryOperator operator, TackyGen.Val source, TackyGen.Val destination) -> {
+                final var sourceOperand = convertVal(source);
+                final var destinationOperand = convertVal(destination);
+                emitMov(sourceOperand, destinationOperand, instructions);
+                instructions.add(new Codegen.Unary(convertUnaryOperator(operator), destinationOperand));
+            }
+            case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) -> {
+                final var sourceOperand = convertVal(source);
+                emitMov(sourceOperand, convertVal(destination), instructions);
+            }
+        }
+    }
+
+    private void emitMov(Codegen.Operand source, Codegen.Operand destination, List<Codegen.Instruction> instructions) {
+        if (source instanceof Codegen.Stack && destination instanceof Codegen.Stack) {
+            instructions.add(new Codegen.Mov(source, R10));
+            instructions.add(new Codegen.Mov(R10, destination));
+        } else {
+            instructions.add(new Codegen.Mov(source, destination));
+        }
+    }
+
+    private Codegen.Operand convertVal(TackyGen.Val val) {
+        return switch (val) {
+            case TackyGen.Constant(int value) -> new Codegen.Imm(value);
+            case TackyGen.Var(int identifier) -> convertVar(identifier);
+        };
+    }
+
+    private Codegen.Stack convertVar(int identifier) {
+        final var slotIndex = stackSlotIndexes.get(identifier, -1);
+        if (slotIndex >= 0) {
+            return stackSlots.get(slotIndex);
+        }
+
+        final var stackSlot = frameLayout.allocate(index, lastUses.get(identifier, index));
+        stackSlotIndexes.put(identifier, stackSlots.size());
+        stackSlots.add(stackSlot);
+        return stackSlot;
+    }
+
+    private Codegen.UnaryOperator convertUnaryOperator(TackyGen.UnaryOperator operator) {
+        return switch (operator) {
+            case TackyGen.Negate _ -> NEG;
+            case TackyGen.BitwiseComplement _ -> NOT;
+        };
+    }
+}
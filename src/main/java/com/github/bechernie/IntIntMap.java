@@ -0,0 +1,80 @@
+package com.github.bechernie;
+
+import java.util.Arrays;
+
+public class IntIntMap {
+
+    private static final int FREE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys = newKeys(INITIAL_CAPACITY);
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public int get(int key, int missing) {
+        final var mask = keys.length - 1;
+        for (var slot = mix(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    public void put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key " + key);
+        }
+
+        if (2 * (size + 1) > keys.length) {
+            resize();
+        }
+
+        final var mask = keys.length - 1;
+        var slot = mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        final var oldKeys = keys;
+        final var oldValues = values;
+
+        keys = newKeys(oldKeys.length * 2);
+        values = new int[oldKeys.length * 2];
+
+        final var mask = keys.length - 1;
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                var slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int[] newKeys(int capacity) {
+        final var keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        return keys;
+    }
+
+    private static int mix(int key) {
+        final var hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,15 +1,16 @@
 package com.github.bechernie;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.regex.Pattern;
 
 public class Lexer {
 
@@ -85,100 +86,392 @@ public class Lexer {
     public record EOF() implements LexemeType {
     }
 
-    public static class LexingException extends RuntimeException {
+    public sealed interface LexResult {
     }
 
-    private static final Map<Pattern, Function<String, LexemeType>> LEXEMES_PATTERNS = new LinkedHashMap<>();
+    public record Error(char currentChar, int line, int column) implements LexResult {
+    }
 
-    static {
-        LEXEMES_PATTERNS.put(Pattern.compile("\\w*\\b"), (matchedText) -> switch (matchedText) {
-            case "int" -> new IntKeyword();
-            case "void" -> new VoidKeyword();
-            case "return" -> new Lexer.ReturnKeyword();
-            default -> {
-                final var intConstant = Pattern.compile("[0-9]+\\b");
-                final var leadingChar = matchedText.getBytes()[0];
+    public record Success(List<Lexeme> lexemes) implements LexResult {
+    }
 
-                if (intConstant.matcher(matchedText).matches()) {
-                    yield new IntConstant(Integer.parseInt(matchedText));
-                } else if (leadingChar > '0' && leadingChar < '9') {
-                    throw new LexingException();
-                }
+    public static final IntKeyword INT_KEYWORD = new IntKeyword();
+    public static final VoidKeyword VOID_KEYWORD = new VoidKeyword();
+    public static final ReturnKeyword RETURN_KEYWORD = new ReturnKeyword();
+    public static final OpenParenthesis OPEN_PARENTHESIS = new OpenParenthesis();
+    public static final CloseParenthesis CLOSE_PARENTHESIS = new CloseParenthesis();
+    public static final OpenBrace OPEN_BRACE = new OpenBrace();
+    public static final CloseBrace CLOSE_BRACE = new CloseBrace();
+    public static final Semicolon SEMICOLON = new Semicolon();
+    public static final Minus MINUS = new Minus();
+    public static final Decrement DECREMENT = new Decrement();
+    public static final BitwiseComplement BITWISE_COMPLEMENT = new BitwiseComplement();
+    public static final EOF END_OF_FILE = new EOF();
+
+    static final int KIND_WORD = 0;
+    static final int KIND_INT_CONSTANT = 1;
+    static final int KIND_EOF = 2;
+    static final int KIND_OPEN_PARENTHESIS = 3;
+    static final int KIND_CLOSE_PARENTHESIS = 4;
+    static final int KIND_OPEN_BRACE = 5;
+    static final int KIND_CLOSE_BRACE = 6;
+    static final int KIND_SEMICOLON = 7;
+    static final int KIND_MINUS = 8;
+    static final int KIND_DECREMENT = 9;
+    static final int KIND_BITWISE_COMPLEMENT = 10;
+
+    private static final LexemeType[] FIXED_TYPES = {
+            null,
+            null,
+            END_OF_FILE,
+            OPEN_PARENTHESIS,
+            CLOSE_PARENTHESIS,
+            OPEN_BRACE,
+            CLOSE_BRACE,
+            SEMICOLON,
+            MINUS,
+            DECREMENT,
+            BITWISE_COMPLEMENT,
+    };
+
+    static LexemeType type(int kind, int payload, SymbolTable symbols) {
+        return switch (kind) {
+            case KIND_WORD -> symbols.type(payload);
+            case KIND_INT_CONSTANT -> new IntConstant(payload);
+            default -> FIXED_TYPES[kind];
+        };
+    }
 
-                yield new Identifier(matchedText);
-            }
-        });
-        LEXEMES_PATTERNS.put(Pattern.compile("--"), (_) -> new Decrement());
-        LEXEMES_PATTERNS.put(Pattern.compile("-"), (_) -> new Minus());
-        LEXEMES_PATTERNS.put(Pattern.compile("~"), (_) -> new BitwiseComplement());
-        LEXEMES_PATTERNS.put(Pattern.compile("\\("), (_) -> new OpenParenthesis());
-        LEXEMES_PATTERNS.put(Pattern.compile("\\)"), (_) -> new CloseParenthesis());
-        LEXEMES_PATTERNS.put(Pattern.compile("\\{"), (_) -> new OpenBrace());
-        LEXEMES_PATTERNS.put(Pattern.compile("}"), (_) -> new CloseBrace());
-        LEXEMES_PATTERNS.put(Pattern.compile(";"), (_) -> new Semicolon());
+    private final SymbolTable symbols;
+
+    public Lexer() {
+        this(new SymbolTable());
     }
 
-    public sealed interface LexResult {
+    public Lexer(SymbolTable symbols) {
+        this.symbols = symbols;
     }
 
-    public record Error(char currentChar, int line, int column) implements LexResult {
+    public SymbolTable getSymbols() {
+        return symbols;
     }
 
-    public record Success(List<Lexeme> lexemes) implements LexResult {
+    public static class LexingException extends RuntimeException {
+
+        private final Error error;
+
+        public LexingException(Error error) {
+            super(null, null, false, false);
+            this.error = error;
+        }
+
+        public Error getError() {
+            return error;
+        }
+    }
+
+    public LexResult lex(CharSequence program) {
+        return lex(tokens(program));
+    }
+
+    public Scanner tokens(CharSequence program) {
+        return new Scanner(new CharSequenceInput(program), symbols);
+    }
+
+    public Scanner tokens(Reader reader) {
+        return new Scanner(new ReaderInput(reader), symbols);
     }
 
-    public LexResult lex(String program) {
+    public Scanner tokens(ByteBuffer program) {
+        return new Scanner(new ByteBufferInput(program), symbols);
+    }
+
+    public LexResult lex(TokenSource tokens) {
         final var lexemes = new ArrayList<Lexeme>();
 
-        var currentLine = 1;
-        var currentColumn = 1;
-
-        while (!program.isEmpty()) {
-            if (program.getBytes()[0] == ' ') {
-                program = program.substring(1);
-                currentColumn++;
-            } else if (program.getBytes()[0] == '\n') {
-                program = program.substring(1);
-                currentColumn = 1;
-                currentLine++;
-            } else {
-                var longestMatch = "";
-                LexemeType lexemeType = null;
-
-                for (final var lexemePattern : LEXEMES_PATTERNS.entrySet()) {
-                    final var lexemeMatcher = lexemePattern.getKey().matcher(program);
-
-                    for (var i = program.length(); i > longestMatch.length(); i--) {
-                        lexemeMatcher.reset();
-                        lexemeMatcher.region(0, i);
-
-                        if (lexemeMatcher.matches()) {
-                            final var matchedGroup = lexemeMatcher.group();
-
-                            if (matchedGroup.length() > longestMatch.length()) {
-                                try {
-                                    lexemeType = lexemePattern.getValue().apply(matchedGroup);
-                                    longestMatch = matchedGroup;
-                                } catch (LexingException e) {
-                                    return new Error((char) program.getBytes()[0], currentLine, currentColumn);
-                                }
-                            }
+        try {
+            Lexeme lexeme;
+            do {
+                lexeme = tokens.next();
+                lexemes.add(lexeme);
+            } while (!(lexeme.type() instanceof EOF));
+        } catch (LexingException e) {
+            return e.getError();
+        }
+
+        return new Success(lexemes);
+    }
+
+    private interface Input {
+
+        int peek(int offset);
+
+        void skip(int length);
+    }
+
+    private static class CharSequenceInput implements Input {
+
+        private final CharSequence program;
+        private int position = 0;
+
+        CharSequenceInput(CharSequence program) {
+            this.program = program;
+        }
+
+        @Override
+        public int peek(int offset) {
+            return position + offset < program.length() ? program.charAt(position + offset) : -1;
+        }
+
+        @Override
+        public void skip(int length) {
+            position += length;
+        }
+    }
+
+    private static class ByteBufferInput implements Input {
+
+        private final ByteBuffer program;
+        private int position;
+
+        ByteBufferInput(ByteBuffer program) {
+            this.program = program;
+            this.position = program.position();
+        }
+
+        @Override
+        public int peek(int offset) {
+            return position + offset < program.limit() ? program.get(position + offset) & 0xFF : -1;
+        }
+
+        @Override
+        public void skip(int length) {
+            position += length;
+        }
+    }
+
+    private static class ReaderInput implements Input {
+
+        private final Reader reader;
+        private char[] buffer = new char[8192];
+        private int position = 0;
+        private int limit = 0;
+        private boolean eof = false;
+
+        ReaderInput(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int peek(int offset) {
+            while (position + offset >= limit && !eof) {
+                fill();
+            }
+            return position + offset < limit ? buffer[position + offset] : -1;
+        }
+
+        @Override
+        public void skip(int length) {
+            position += length;
+        }
+
+        private void fill() {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            try {
+                final var read = reader.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    eof = true;
+                } else {
+                    limit += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static final class Scanner implements TokenSource {
+
+        private final Input input;
+        private final SymbolTable symbols;
+        private int currentLine = 1;
+        private int currentColumn = 1;
+        private char[] word = new char[64];
+
+        private boolean scanned = false;
+        private int kind;
+        private int payload;
+        private int line;
+        private int columnStart;
+        private int columnEnd;
+        private int tokenCount = 0;
+
+        private Scanner(Input input, SymbolTable symbols) {
+            this.input = input;
+            this.symbols = symbols;
+        }
+
+        @Override
+        public Lexeme peek() {
+            return new Lexeme(peekType(), line, columnStart, columnEnd);
+        }
+
+        @Override
+        public LexemeType peekType() {
+            if (!scanned) {
+                scan();
+            }
+            return type(kind, payload, symbols);
+        }
+
+        @Override
+        public boolean peekIsIntConstant() {
+            if (!scanned) {
+                scan();
+            }
+            return kind == KIND_INT_CONSTANT;
+        }
+
+        @Override
+        public int peekIntConstant() {
+            if (!scanned) {
+                scan();
+            }
+            return payload;
+        }
+
+        @Override
+        public void advance() {
+            if (!scanned) {
+                scan();
+            }
+            scanned = false;
+        }
+
+        public int tokenCount() {
+            return tokenCount;
+        }
+
+        public void skipToEnd() {
+            if (!scanned) {
+                scan();
+            }
+            while (kind != KIND_EOF) {
+                scan();
+            }
+        }
+
+        public TokenBuffer toBuffer() {
+            final var buffer = new TokenBuffer(symbols);
+
+            do {
+                if (!scanned) {
+                    scan();
+                }
+                buffer.add(kind, line, columnStart, columnEnd, payload);
+                scanned = false;
+            } while (kind != KIND_EOF);
+
+            return buffer;
+        }
+
+        private void scan() {
+            while (true) {
+                final var currentChar = input.peek(0);
+
+                if (currentChar == -1) {
+                    setToken(KIND_EOF, 0, 0);
+                    return;
+                }
+
+                if (currentChar == ' ') {
+                    input.skip(1);
+                    currentColumn++;
+                    continue;
+                }
+
+                if (currentChar == '\n') {
+                    input.skip(1);
+                    currentColumn = 1;
+                    currentLine++;
+                    continue;
+                }
+
+                if (isWordChar(currentChar)) {
+                    var wordLength = 0;
+                    var hash = 0;
+                    for (var c = currentChar; isWordChar(c); c = input.peek(wordLength)) {
+                        if (wordLength == word.length) {
+                            word = Arrays.copyOf(word, wordLength * 2);
                         }
+                        word[wordLength++] = (char) c;
+                        hash = 31 * hash + c;
                     }
+                    scanWord(currentChar, wordLength, hash);
+                } else if (currentChar == '-' && input.peek(1) == '-') {
+                    setToken(KIND_DECREMENT, 0, 2);
+                } else {
+                    final var tokenKind = switch (currentChar) {
+                        case '-' -> KIND_MINUS;
+                        case '~' -> KIND_BITWISE_COMPLEMENT;
+                        case '(' -> KIND_OPEN_PARENTHESIS;
+                        case ')' -> KIND_CLOSE_PARENTHESIS;
+                        case '{' -> KIND_OPEN_BRACE;
+                        case '}' -> KIND_CLOSE_BRACE;
+                        case ';' -> KIND_SEMICOLON;
+                        default -> throw new LexingException(new Error((char) currentChar, currentLine, currentColumn));
+                    };
+                    setToken(tokenKind, 0, 1);
                 }
+                return;
+            }
+        }
 
-                if (lexemeType == null) {
-                    return new Error((char) program.getBytes()[0], currentLine, currentColumn);
-                }
+        private void scanWord(int currentChar, int length, int hash) {
+            if (!isDigit(currentChar)) {
+                setToken(KIND_WORD, symbols.intern(word, length, hash), length);
+                return;
+            }
 
-                lexemes.add(new Lexeme(lexemeType, currentLine, currentColumn, currentColumn + longestMatch.length()));
-                currentColumn += longestMatch.length();
-                program = program.substring(longestMatch.length());
+            var value = 0L;
+            for (var i = 0; i < length; i++) {
+                if (!isDigit(word[i])) {
+                    throw new LexingException(new Error((char) currentChar, currentLine, currentColumn));
+                }
+                value = value * 10 + (word[i] - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new LexingException(new Error((char) currentChar, currentLine, currentColumn));
+                }
             }
+
+            setToken(KIND_INT_CONSTANT, (int) value, length);
         }
 
-        lexemes.add(new Lexeme(new EOF(), currentLine, currentColumn, currentColumn));
+        private void setToken(int tokenKind, int tokenPayload, int length) {
+            kind = tokenKind;
+            payload = tokenPayload;
+            line = currentLine;
+            columnStart = currentColumn;
+            columnEnd = currentColumn + length;
+            scanned = true;
+            tokenCount++;
+            currentColumn += length;
+            input.skip(length);
+        }
+    }
 
-        return new Success(lexemes);
+    private static boolean isWordChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
     }
 }
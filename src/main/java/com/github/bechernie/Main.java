@@ -1,163 +1,798 @@
 package com.github.bechernie;
 
+import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import static java.lang.System.exit;
 
 public class Main {
 
-    record CompileOptions(boolean lex, boolean parse, boolean tacky, boolean codegen) {
+    public record CompileOptions(boolean lex, boolean parse, boolean tacky, boolean codegen, boolean mmap, boolean tokenBuffer, boolean builtinPreprocessor, boolean builtinAssembler, boolean pipeAssembly, boolean emitTacky, int optimizationLevel, boolean peepholeStats, boolean stats, boolean statsJson) {
     }
 
+    private static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final Semaphore PROCESSES = new Semaphore(Runtime.getRuntime().availableProcessors());
+
     public static void main(String[] args) {
-        final var parser = new DefaultParser();
+        final var options = createOptions();
+        options.addOption(null, "daemon", true, "Serves compile requests on the given Unix domain socket");
+        options.addOption(null, "watch", false, "Keeps running and recompiles the files whenever they or their headers change");
+
+        try {
+            final var commandLine = new DefaultParser().parse(options, args);
+
+            if (commandLine.hasOption("daemon")) {
+                new Daemon(Path.of(commandLine.getOptionValue("daemon"))).serve();
+                return;
+            }
+
+            if (commandLine.hasOption("watch")) {
+                new Watcher(commandLine, Path.of("").toAbsolutePath(), System.out, System.err).watch();
+                return;
+            }
+
+            exit(run(commandLine, Path.of("").toAbsolutePath(), System.out, System.err));
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            printHelp(options, System.out);
+            exit(2);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+    }
 
+    public static Options createOptions() {
         final var options = new Options();
         options.addOption("l", "lex", false, "Stops before parsing");
         options.addOption("p", "parse", false, "Stops before tacky generation");
         options.addOption("t", "tacky", false, "Stops before code generation");
         options.addOption("c", "codegen", false, "Stops before assembly emission");
+        options.addOption("m", "mmap", false, "Maps the preprocessed file in memory instead of reading it");
+        options.addOption("b", "token-buffer", false, "Lexes the whole file into a packed token buffer before parsing");
+        options.addOption("P", "builtin-preprocessor", false, "Preprocesses in memory instead of running gcc -E, falling back to gcc for unsupported features");
+        options.addOption("a", "builtin-assembler", false, "Writes an ELF object file directly instead of running the gcc assembler");
+        options.addOption("A", "pipe-assembly", false, "Streams assembly into the gcc assembler's standard input instead of writing a .s file, with --cache-dir it is also streamed into and out of the cache");
+        options.addOption("T", "emit-tacky", false, "Writes the TACKY IR to a binary .tacky file and stops; .tacky files can be compiled like sources");
+        options.addOption("O0", false, "Disables optimizations (default)");
+        options.addOption("O1", false, "Optimizes TACKY with constant folding, copy propagation and dead code elimination, allocates registers and runs peephole rules");
+        options.addOption("O", false, "Same as -O1");
+        options.addOption(null, "peephole-stats", false, "Prints how often each peephole rule fired, nothing is printed for outputs restored from the cache");
+        options.addOption(null, "stats", false, "Prints time, CPU time, allocations and sizes for each compiler phase as a table on standard error");
+        options.addOption(null, "stats-json", false, "Prints the same statistics as --stats as one JSON object per file on standard error");
+        options.addOption(null, "cache-dir", true, "Reuses outputs of identical preprocessed sources stored in the given directory");
+        options.addOption(null, "cache-size", true, "Caps the cache directory at the given number of bytes, evicting least recently used outputs");
+        options.addOption(null, "cache-stats", false, "Prints cache hits and misses after compiling");
+        return options;
+    }
+
+    static void printHelp(Options options, PrintStream out) {
+        final var writer = new PrintWriter(out);
+        final var formatter = HelpFormatter.builder().setPrintWriter(writer).get();
+        formatter.printHelp("[OPTION] <FILE>...", options);
+        writer.flush();
+    }
+
+    static int run(CommandLine commandLine, Path workingDirectory, PrintStream out, PrintStream err) throws ParseException, IOException, InterruptedException {
+        if (commandLine.getArgs().length == 0) {
+            throw new ParseException("Missing file path");
+        }
+
+        final var compileOptions = parseCompileOptions(commandLine);
+        final var cache = createCache(commandLine, workingDirectory);
+
+        final var files = Arrays.stream(commandLine.getArgs()).map(workingDirectory::resolve).toList();
+
+        final var exitCode = files.size() == 1
+                ? compileFile(files.getFirst(), compileOptions, cache, new Semaphore(1), null, out, err, err)
+                : compileFiles(files, compileOptions, cache, out, err);
+
+        if (cache != null && commandLine.hasOption("cache-stats")) {
+            printCacheStats(cache, out);
+        }
+
+        return exitCode;
+    }
+
+    public static CompileOptions parseCompileOptions(CommandLine commandLine) {
+        return new CompileOptions(
+                commandLine.hasOption("l"),
+                commandLine.hasOption("p"),
+                commandLine.hasOption("t"),
+                commandLine.hasOption("c"),
+                commandLine.hasOption("m"),
+                commandLine.hasOption("b"),
+                commandLine.hasOption("P"),
+                commandLine.hasOption("a"),
+                commandLine.hasOption("A"),
+                commandLine.hasOption("T"),
+                parseOptimizationLevel(commandLine),
+                commandLine.hasOption("peephole-stats"),
+                commandLine.hasOption("stats"),
+                commandLine.hasOption("stats-json")
+        );
+    }
+
+    static CompilationCache createCache(CommandLine commandLine, Path workingDirectory) throws ParseException, IOException {
+        return commandLine.hasOption("cache-dir")
+                ? new CompilationCache(workingDirectory.resolve(commandLine.getOptionValue("cache-dir")), parseCacheSize(commandLine))
+                : null;
+    }
+
+    static void printCacheStats(CompilationCache cache, PrintStream out) {
+        final var stats = cache.stats();
+        out.println("Cache: " + stats.hits() + " hits, " + stats.misses() + " misses, " + stats.stores() + " stores, " + stats.evictions() + " evictions");
+    }
+
+    private static int parseOptimizationLevel(CommandLine commandLine) {
+        return commandLine.hasOption("O1") || commandLine.hasOption("O") ? 1 : 0;
+    }
+
+    private static long parseCacheSize(CommandLine commandLine) throws ParseException {
+        if (!commandLine.hasOption("cache-size")) {
+            return DEFAULT_CACHE_SIZE;
+        }
 
         try {
-            final var commandLine = parser.parse(options, args);
+            return Long.parseLong(commandLine.getOptionValue("cache-size"));
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid cache size: " + commandLine.getOptionValue("cache-size"));
+        }
+    }
 
-            if (commandLine.getArgs().length != 1) {
-                throw new ParseException("Missing file path");
+    private record FileOutput(int exitCode, ByteArrayOutputStream out, ByteArrayOutputStream err, ByteArrayOutputStream stats) {
+    }
+
+    private static int compileFiles(List<Path> files, CompileOptions compileOptions, CompilationCache cache, PrintStream out, PrintStream err) throws InterruptedException {
+        final var compilers = new Semaphore(Runtime.getRuntime().availableProcessors());
+        final var outputs = new ArrayList<Future<FileOutput>>();
+
+        try (final var tasks = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (final var file : files) {
+                outputs.add(tasks.submit(() -> compileFileBuffered(file, compileOptions, cache, compilers)));
             }
 
-            final var compileOptions = new CompileOptions(
-                    commandLine.hasOption("l"),
-                    commandLine.hasOption("p"),
-                    commandLine.hasOption("t"),
-                    commandLine.hasOption("c")
-            );
+            var failures = 0;
+            for (var i = 0; i < files.size(); i++) {
+                final FileOutput output;
+                try {
+                    output = outputs.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+
+                output.out().writeTo(out);
+                final var file = files.get(i);
+                output.err().toString(StandardCharsets.UTF_8).lines().forEach(line -> err.println(file + ": " + line));
+                output.stats().writeTo(err);
 
-            final var filePath = Path.of(commandLine.getArgs()[0]);
+                if (output.exitCode() != 0) {
+                    failures++;
+                }
+            }
 
-            final var absoluteFilePath = filePath.toAbsolutePath().toString();
+            if (failures > 0) {
+                err.println(failures + " of " + files.size() + " files failed to compile");
+                return 1;
+            }
 
-            final var filename = FilenameUtils.getBaseName(absoluteFilePath);
-            final var fullPath = FilenameUtils.getFullPath(absoluteFilePath);
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            final var preprocessedFilename = fullPath + filename + ".i";
-            final var assemblyFilename = fullPath + filename + ".s";
+    private static FileOutput compileFileBuffered(Path file, CompileOptions compileOptions, CompilationCache cache, Semaphore compilers) throws InterruptedException {
+        final var out = new ByteArrayOutputStream();
+        final var err = new ByteArrayOutputStream();
+        final var stats = new ByteArrayOutputStream();
+
+        try (final var outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+             final var errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+             final var statsStream = new PrintStream(stats, true, StandardCharsets.UTF_8)) {
+            try {
+                return new FileOutput(compileFile(file, compileOptions, cache, compilers, null, outStream, errStream, statsStream), out, err, stats);
+            } catch (IOException | RuntimeException e) {
+                errStream.println(e);
+                return new FileOutput(1, out, err, stats);
+            }
+        }
+    }
 
-            final var preprocessor = new ProcessBuilder();
-            preprocessor.command("gcc", "-E", "-P", absoluteFilePath, "-o", preprocessedFilename);
-            preprocessor.start().waitFor();
+    static int compileFile(Path filePath, CompileOptions compileOptions, CompilationCache cache, Semaphore compilers, Fingerprints fingerprints, PrintStream out, PrintStream err, PrintStream statsOut) throws IOException, InterruptedException {
+        final var stats = new CompileStats(filePath.toString());
+
+        try {
+            return compileFile(filePath, compileOptions, cache, compilers, fingerprints, stats, out, err);
+        } finally {
+            if (compileOptions.statsJson) {
+                stats.printJson(statsOut);
+            } else if (compileOptions.stats) {
+                stats.printTable(statsOut);
+            }
+        }
+    }
 
-            switch (compile(preprocessedFilename, assemblyFilename, compileOptions)) {
-                case Error(String message) -> {
-                    System.err.println(message);
-                    exit(1);
+    private static int compileFile(Path filePath, CompileOptions compileOptions, CompilationCache cache, Semaphore compilers, Fingerprints fingerprints, CompileStats stats, PrintStream out, PrintStream err) throws IOException, InterruptedException {
+        final var absoluteFilePath = filePath.toAbsolutePath().toString();
+
+        final var filename = FilenameUtils.getBaseName(absoluteFilePath);
+        final var fullPath = FilenameUtils.getFullPath(absoluteFilePath);
+
+        final var preprocessedFilename = fullPath + filename + ".i";
+        final var dependencyFilename = fullPath + filename + ".d";
+        final var assemblyFilename = fullPath + filename + (compileOptions.builtinAssembler ? ".o" : ".s");
+
+        CompileInput input = null;
+
+        if (FilenameUtils.isExtension(absoluteFilePath, "tacky")) {
+            input = new TackyFile(absoluteFilePath);
+        } else {
+            try (final var _ = stats.phase("preprocess")) {
+                if (compileOptions.builtinPreprocessor) {
+                    switch (new Preprocessor().preprocess(filePath)) {
+                        case Preprocessor.Success(CharSequence text, Set<Path> files) -> {
+                            input = new PreprocessedText(text);
+                            if (fingerprints != null) {
+                                fingerprints.setDependencies(files);
+                            }
+                        }
+                        case Preprocessor.Error(Path file, int line, String message) -> {
+                            err.println("Preprocessor error: " + message + " in " + file + " at line " + line);
+                            return 1;
+                        }
+                        case Preprocessor.Unsupported _ -> {
+                            // Falls back to gcc -E on purpose
+                        }
+                    }
                 }
-                case Success() -> {
-                    // Empty on purpose
+
+                if (input == null) {
+                    final var preprocessor = new ProcessBuilder();
+                    preprocessor.command("gcc", "-E", "-P", absoluteFilePath, "-o", preprocessedFilename);
+                    if (fingerprints != null) {
+                        preprocessor.command().addAll(List.of("-MMD", "-MF", dependencyFilename));
+                    }
+                    final var exitCode = runProcess(preprocessor, err);
+
+                    if (fingerprints != null && Files.exists(Path.of(dependencyFilename))) {
+                        fingerprints.setDependencies(Fingerprints.readDependencies(Path.of(dependencyFilename)));
+                        Files.delete(Path.of(dependencyFilename));
+                    }
+
+                    if (exitCode != 0) {
+                        err.println("Preprocessor error: gcc exited with status " + exitCode);
+                        return 1;
+                    }
+
+                    input = new PreprocessedFile(preprocessedFilename);
                 }
             }
+        }
+
+        if (fingerprints != null && !fingerprints.update(Fingerprints.Stage.PREPROCESSED, digest(input))) {
+            return 0;
+        }
+
+        String cacheKey = null;
+        if (cache != null && !stopsBeforeEmission(compileOptions)) {
+            try (final var _ = stats.phase("cache-lookup")) {
+                cacheKey = switch (input) {
+                    case PreprocessedText(CharSequence text) -> cache.key(text, outputOptions(compileOptions));
+                    case PreprocessedFile(String path) -> cache.key(Files.readAllBytes(Path.of(path)), outputOptions(compileOptions));
+                    case TackyFile(String path) -> cache.key(Files.readAllBytes(Path.of(path)), outputOptions(compileOptions));
+                };
+            }
+        }
 
+        if (compileOptions.emitTacky) {
+            return reportResult(compile(input, new TackyTarget(fullPath + filename + ".tacky"), compileOptions, compilers, fingerprints, stats, out), err);
+        }
+
+        if (compileOptions.pipeAssembly && !compileOptions.builtinAssembler && !stopsBeforeEmission(compileOptions)) {
+            final var assembleAndLink = new ProcessBuilder();
+            assembleAndLink.command("gcc", "-x", "assembler", "-", "-o", fullPath + filename);
+
+            Path cacheEntry = null;
+            PROCESSES.acquire();
+            try {
+                final var assembler = assembleAndLink.redirectErrorStream(true).start();
+                final var diagnostics = forward(assembler.getInputStream(), err);
+
+                CompileResult compileResult = null;
+                try {
+                    final var assemblerInput = Channels.newChannel(assembler.getOutputStream());
+                    if (cacheKey == null) {
+                        compileResult = compile(input, new PipeTarget(assemblerInput), compileOptions, compilers, fingerprints, stats, out);
+                    } else if (restore(cache, cacheKey, assemblerInput, stats)) {
+                        compileResult = new Success();
+                    } else {
+                        cacheEntry = cache.createTemporary(cacheKey);
+                        try (final var cacheInput = FileChannel.open(cacheEntry, StandardOpenOption.WRITE)) {
+                            compileResult = compile(input, new PipeTarget(new TeeChannel(assemblerInput, cacheInput)), compileOptions, compilers, fingerprints, stats, out);
+                        }
+                    }
+
+                    if (compileResult instanceof Success) {
+                        assemblerInput.close();
+                    }
+                } finally {
+                    if (!(compileResult instanceof Success)) {
+                        assembler.destroyForcibly();
+                    }
+                }
+
+                final int exitCode;
+                try (final var _ = stats.phase("assemble+link")) {
+                    exitCode = assembler.waitFor();
+                    diagnostics.join();
+                }
+
+                if (compileResult instanceof Error(String message)) {
+                    err.println(message);
+                    return 1;
+                }
+
+                if (compileResult instanceof Unchanged) {
+                    return 0;
+                }
+
+                if (cacheEntry != null) {
+                    try (final var _ = stats.phase("cache-store")) {
+                        cache.commit(cacheKey, cacheEntry);
+                    }
+                }
+
+                if (exitCode != 0) {
+                    err.println("Assembler error: gcc exited with status " + exitCode);
+                    return 1;
+                }
+
+                return 0;
+            } finally {
+                PROCESSES.release();
+                if (cacheEntry != null) {
+                    Files.deleteIfExists(cacheEntry);
+                }
+            }
+        }
+
+        if (cacheKey == null || !restore(cache, cacheKey, assemblyFilename, stats)) {
+            final var compileResult = compile(input, new FileTarget(assemblyFilename), compileOptions, compilers, fingerprints, stats, out);
+            if (compileResult instanceof Unchanged) {
+                return 0;
+            }
+
+            final var exitCode = reportResult(compileResult, err);
+            if (exitCode != 0) {
+                return exitCode;
+            }
+
+            if (cacheKey != null) {
+                try (final var _ = stats.phase("cache-store")) {
+                    cache.store(cacheKey, Path.of(assemblyFilename));
+                }
+            }
+        }
+
+        if (stopsBeforeEmission(compileOptions)) {
+            return 0;
+        }
+
+        try (final var _ = stats.phase(compileOptions.builtinAssembler ? "link" : "assemble+link")) {
             final var assembleAndLink = new ProcessBuilder();
             assembleAndLink.command("gcc", assemblyFilename, "-o", fullPath + filename);
-            assembleAndLink.start().waitFor();
-        } catch (ParseException e) {
-            final var formatter = HelpFormatter.builder().get();
-            formatter.printHelp("[OPTION] <FILE>", options);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            final var exitCode = runProcess(assembleAndLink, err);
 
-            throw new RuntimeException(e);
+            if (exitCode != 0) {
+                err.println((compileOptions.builtinAssembler ? "Linker error" : "Assembler error") + ": gcc exited with status " + exitCode);
+                return 1;
+            }
+        }
+
+        return 0;
+    }
+
+    private static int runProcess(ProcessBuilder processBuilder, PrintStream err) throws IOException, InterruptedException {
+        PROCESSES.acquire();
+        try {
+            final var process = processBuilder.redirectErrorStream(true).start();
+            process.getInputStream().transferTo(err);
+            return process.waitFor();
+        } finally {
+            PROCESSES.release();
+        }
+    }
+
+    private static Thread forward(InputStream diagnostics, PrintStream err) {
+        return Thread.ofVirtual().start(() -> {
+            try {
+                diagnostics.transferTo(err);
+            } catch (IOException e) {
+                err.println(e);
+            }
+        });
+    }
+
+    private static boolean restore(CompilationCache cache, String cacheKey, String assemblyFilename, CompileStats stats) throws IOException {
+        try (final var _ = stats.phase("cache-restore")) {
+            return cache.restore(cacheKey, Path.of(assemblyFilename));
+        }
+    }
+
+    private static boolean restore(CompilationCache cache, String cacheKey, WritableByteChannel destination, CompileStats stats) throws IOException {
+        try (final var _ = stats.phase("cache-restore")) {
+            return cache.restore(cacheKey, destination);
+        }
+    }
+
+    private static int reportResult(CompileResult compileResult, PrintStream err) {
+        return switch (compileResult) {
+            case Error(String message) -> {
+                err.println(message);
+                yield 1;
+            }
+            case Success(), Unchanged() -> 0;
+        };
+    }
+
+    private static byte[] digest(CompileInput input) throws IOException {
+        return switch (input) {
+            case PreprocessedText(CharSequence text) -> Fingerprints.digest(text);
+            case PreprocessedFile(String path) -> Fingerprints.digest(Files.readAllBytes(Path.of(path)));
+            case TackyFile(String path) -> Fingerprints.digest(Files.readAllBytes(Path.of(path)));
+        };
+    }
+
+    private static String outputOptions(CompileOptions compileOptions) {
+        return "-O" + compileOptions.optimizationLevel + (compileOptions.builtinAssembler ? " -a" : "");
+    }
+
+    private static boolean stopsBeforeEmission(CompileOptions compileOptions) {
+        return compileOptions.lex || compileOptions.parse || compileOptions.tacky || compileOptions.codegen || compileOptions.emitTacky;
+    }
+
+    private static CompileResult compile(CompileInput input, OutputTarget target, CompileOptions compileOptions, Semaphore compilers, Fingerprints fingerprints, CompileStats stats, PrintStream out) throws IOException, InterruptedException {
+        compilers.acquire();
+        try {
+            return switch (input) {
+                case PreprocessedText(CharSequence text) -> compilePreprocessed(text, target, compileOptions, fingerprints, stats, out);
+                case PreprocessedFile(String path) -> compile(path, target, compileOptions, fingerprints, stats, out);
+                case TackyFile(String path) -> compileTacky(path, target, compileOptions, fingerprints, stats, out);
+            };
+        } finally {
+            compilers.release();
         }
     }
 
-    sealed interface CompileResult {
+    sealed interface CompileInput {
+    }
+
+    record PreprocessedText(CharSequence text) implements CompileInput {
+    }
+
+    record PreprocessedFile(String path) implements CompileInput {
+    }
+
+    record TackyFile(String path) implements CompileInput {
+    }
+
+    sealed interface OutputTarget {
+    }
+
+    record FileTarget(String path) implements OutputTarget {
+    }
+
+    record PipeTarget(WritableByteChannel channel) implements OutputTarget {
+    }
+
+    record TackyTarget(String path) implements OutputTarget {
+    }
+
+    public sealed interface CompileResult {
+    }
+
+    public record Success() implements CompileResult {
+    }
+
+    public record Error(String message) implements CompileResult {
+    }
+
+    public record Unchanged() implements CompileResult {
     }
 
-    record Success() implements CompileResult {
+    private static CompileResult compile(String inputPath, OutputTarget target, CompileOptions compileOptions, Fingerprints fingerprints, CompileStats stats, PrintStream out) throws IOException {
+        final var lexer = new Lexer();
+
+        if (compileOptions.mmap) {
+            try (final var channel = FileChannel.open(Path.of(inputPath), StandardOpenOption.READ)) {
+                final MappedByteBuffer program;
+                try (final var _ = stats.phase("read")) {
+                    program = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+
+                return compile(lexer, lexer.tokens(program), target, compileOptions, fingerprints, stats, out);
+            }
+        }
+
+        try (final var reader = Files.newBufferedReader(Path.of(inputPath), StandardCharsets.UTF_8)) {
+            return compile(lexer, lexer.tokens(reader), target, compileOptions, fingerprints, stats, out);
+        }
+    }
+
+    private static CompileResult compileTacky(String inputPath, OutputTarget target, CompileOptions compileOptions, Fingerprints fingerprints, CompileStats stats, PrintStream out) throws IOException {
+        if (compileOptions.lex || compileOptions.parse) {
+            return new Error("TACKY error: " + inputPath + " has already been lexed and parsed");
+        }
+
+        final TackyGen.Program tackyProgram;
+        try (final var _ = stats.phase("read");
+             final var inputStream = new BufferedInputStream(Files.newInputStream(Path.of(inputPath)))) {
+            tackyProgram = new TackyReader(inputStream, Files.size(Path.of(inputPath))).read();
+        } catch (TackyReader.InvalidFormatException e) {
+            return new Error("TACKY error: " + e.getMessage() + " in " + inputPath);
+        }
+
+        return handleTackyResult(compileOptions, target, tackyProgram, fingerprints, stats, out);
     }
 
-    record Error(String message) implements CompileResult {
+    private static CompileResult compilePreprocessed(CharSequence program, OutputTarget target, CompileOptions compileOptions, Fingerprints fingerprints, CompileStats stats, PrintStream out) {
+        final var lexer = new Lexer();
+
+        return compile(lexer, lexer.tokens(program), target, compileOptions, fingerprints, stats, out);
     }
 
-    private static CompileResult compile(String inputPath, String outputPath, CompileOptions compileOptions) throws IOException, InterruptedException {
-        var remainingFileContent = FileUtils.readFileToString(new File(inputPath), StandardCharsets.UTF_8);
+    public static CompileResult compile(CharSequence program, CompileOptions compileOptions, WritableByteChannel channel) {
+        final var lexer = new Lexer();
 
-        final var lexResult = new Lexer().lex(remainingFileContent);
+        return compile(lexer, lexer.tokens(program), new PipeTarget(channel), compileOptions, null, new CompileStats("<memory>"), System.out);
+    }
+
+    public static CompileResult compile(ByteBuffer program, CompileOptions compileOptions, WritableByteChannel channel) {
+        final var lexer = new Lexer();
 
-        return handleLexerResult(compileOptions, outputPath, lexResult);
+        return compile(lexer, lexer.tokens(program), new PipeTarget(channel), compileOptions, null, new CompileStats("<memory>"), System.out);
     }
 
-    private static CompileResult handleLexerResult(CompileOptions compileOptions, String outputPath, Lexer.LexResult lexResult) {
+    private static CompileResult compile(Lexer lexer, Lexer.Scanner scanner, OutputTarget target, CompileOptions compileOptions, Fingerprints fingerprints, CompileStats stats, PrintStream out) {
+        final TokenSource tokens;
+
+        if (compileOptions.tokenBuffer || fingerprints != null) {
+            final TokenBuffer tokenBuffer;
+            try (final var _ = stats.phase("lex")) {
+                tokenBuffer = scanner.toBuffer();
+            } catch (Lexer.LexingException e) {
+                return handleLexerResult(e.getError(), out);
+            }
+
+            if (compileOptions.lex) {
+                return handleLexerResult(new Lexer.Success(tokenBuffer.asList()), out);
+            }
+
+            if (fingerprints != null && !fingerprints.update(Fingerprints.Stage.TOKENS, Fingerprints.digest(tokenBuffer, lexer.getSymbols()))) {
+                return new Unchanged();
+            }
+
+            tokens = tokenBuffer.cursor();
+        } else {
+            if (compileOptions.lex) {
+                final Lexer.LexResult lexResult;
+                try (final var _ = stats.phase("lex")) {
+                    lexResult = lexer.lex(scanner);
+                }
+                stats.count("tokens", scanner.tokenCount());
+
+                return handleLexerResult(lexResult, out);
+            }
+
+            tokens = scanner;
+        }
+
+        final Parser.ParseResult parseResult;
+        try (final var _ = stats.phase(tokens instanceof Lexer.Scanner ? "lex+parse" : "parse")) {
+            parseResult = new Parser().parseProgram(tokens);
+            if (!(parseResult instanceof Parser.Success) && tokens instanceof Lexer.Scanner) {
+                scanner.skipToEnd();
+            }
+        } catch (Lexer.LexingException e) {
+            return handleLexerResult(e.getError(), out);
+        }
+        stats.count("tokens", scanner.tokenCount());
+
+        return handleParserResult(compileOptions, target, parseResult, fingerprints, stats, out);
+    }
+
+    private static CompileResult handleLexerResult(Lexer.LexResult lexResult, PrintStream out) {
         return switch (lexResult) {
             case Lexer.Error(char currentChar, int line, int column) ->
                     new Error("Lexer error: unexpected char = '" + currentChar + "' at line " + line + ", column " + column);
             case Lexer.Success(List<Lexer.Lexeme> lexemes) -> {
-                if (compileOptions.lex) {
-                    System.out.println(lexemes);
-
-                    yield new Success();
-                }
+                out.println(lexemes);
 
-                final var parseResult = new Parser().parseProgram(lexemes);
-
-                yield handleParserResult(compileOptions, outputPath, parseResult);
+                yield new Success();
             }
         };
     }
 
-    private static CompileResult handleParserResult(CompileOptions compileOptions, String outputPath, Parser.ParseResult parseResult) {
+    private static CompileResult handleParserResult(CompileOptions compileOptions, OutputTarget target, Parser.ParseResult parseResult, Fingerprints fingerprints, CompileStats stats, PrintStream out) {
         return switch (parseResult) {
             case Parser.Error(List<Lexer.LexemeType> expected, Lexer.Lexeme actual) ->
                     new Error("Parser error: " + "expected one of " + formatExpectedList(expected) + ", found '" + Lexer.getDescriptorValue(actual.type()) + "', at line " + actual.line() + ", column " + actual.columnStart());
+            case Parser.Redefinition(String name, Lexer.Lexeme definition) ->
+                    new Error("Parser error: redefinition of '" + name + "' at line " + definition.line() + ", column " + definition.columnStart());
             case Parser.Success success -> {
+                stats.count("ast-nodes", CompileStats.countNodes(success.program()));
+
                 if (compileOptions.parse) {
-                    System.out.println(success.program());
+                    out.println(success.program());
 
                     yield new Success();
                 }
 
-                final var tackyProgram = new TackyGen().emitTacky(success.program());
+                final TackyGen.Program tackyProgram;
+                try (final var _ = stats.phase("tacky")) {
+                    tackyProgram = new TackyGen().emitTacky(success.program());
+                }
+
+                yield handleTackyResult(compileOptions, target, tackyProgram, fingerprints, stats, out);
+            }
+        };
+    }
 
-                if (compileOptions.tacky) {
-                    System.out.println(tackyProgram);
+    private static CompileResult handleTackyResult(CompileOptions compileOptions, OutputTarget target, TackyGen.Program unoptimizedProgram, Fingerprints fingerprints, CompileStats stats, PrintStream out) {
+        stats.count("functions", unoptimizedProgram.functions().size());
+        stats.count("tacky-instructions", countInstructions(unoptimizedProgram));
 
-                    yield new Success();
-                }
+        if (fingerprints != null && !fingerprints.update(Fingerprints.Stage.TACKY, Fingerprints.digest(unoptimizedProgram))) {
+            return new Unchanged();
+        }
 
-                final var codegen = new Codegen().emitAssembly(tackyProgram);
-                final var replacePseudo = new ReplacePseudo().emitAssembly(codegen);
-                final var fixupInstructions = new FixupInstructions().emitAssembly(replacePseudo.program(), replacePseudo.stackOffset());
+        final TackyGen.Program tackyProgram;
+        if (compileOptions.optimizationLevel > 0) {
+            final var optimizer = new TackyOptimizer(compileOptions.optimizationLevel);
+            tackyProgram = new TackyGen.Program(unoptimizedProgram.functions().parallelStream()
+                    .map(function -> {
+                        try (final var _ = stats.phase("optimize")) {
+                            return optimizer.optimize(function);
+                        }
+                    })
+                    .toList());
+            stats.count("optimized-tacky-instructions", countInstructions(tackyProgram));
+        } else {
+            tackyProgram = unoptimizedProgram;
+        }
 
-                yield handleCodegenResult(compileOptions,outputPath, fixupInstructions);
+        if (compileOptions.tacky) {
+            out.println(tackyProgram);
+
+            return new Success();
+        }
+
+        if (target instanceof TackyTarget(String path)) {
+            try (final var _ = stats.phase("write-tacky")) {
+                new TackyWriter().write(path, tackyProgram);
             }
-        };
+
+            return new Success();
+        }
+
+        final var peepholeOptimizer = new PeepholeOptimizer();
+        final Codegen.Program assembly;
+        try (final var _ = stats.phase("backend")) {
+            assembly = new Codegen.Program(tackyProgram.functions().parallelStream()
+                    .map(function -> emitAssembly(compileOptions, function, peepholeOptimizer, stats))
+                    .toList());
+        }
+
+        if (compileOptions.optimizationLevel > 0 && compileOptions.peepholeStats) {
+            out.println(peepholeOptimizer.getHitCounts().entrySet().stream()
+                    .map(hitCount -> hitCount.getKey() + "=" + hitCount.getValue())
+                    .collect(Collectors.joining(", ", "Peephole: ", "")));
+        }
+
+        return handleCodegenResult(compileOptions, target, assembly, stats, out);
+    }
+
+    private static Codegen.Function emitAssembly(CompileOptions compileOptions, TackyGen.Function function, PeepholeOptimizer peepholeOptimizer, CompileStats stats) {
+        if (compileOptions.optimizationLevel == 0 && !compileOptions.codegen) {
+            try (final var _ = stats.phase("fused-backend")) {
+                return new FusedBackend().emitAssembly(function);
+            }
+        }
+
+        final Codegen.Function codegen;
+        try (final var _ = stats.phase("codegen")) {
+            codegen = new Codegen().emitAssembly(function);
+        }
+
+        final ReplacePseudo.Result replacePseudo;
+        if (compileOptions.optimizationLevel > 0) {
+            try (final var _ = stats.phase("register-allocation")) {
+                replacePseudo = new RegisterAllocator().emitAssembly(codegen);
+            }
+        } else {
+            try (final var _ = stats.phase("replace-pseudo")) {
+                replacePseudo = new ReplacePseudo().emitAssembly(codegen);
+            }
+        }
+
+        final Codegen.Function fixupInstructions;
+        try (final var _ = stats.phase("fixup")) {
+            fixupInstructions = new FixupInstructions().emitAssembly(replacePseudo.function(), replacePseudo.stackOffset());
+        }
+
+        if (compileOptions.optimizationLevel == 0) {
+            return fixupInstructions;
+        }
+
+        try (final var _ = stats.phase("peephole")) {
+            return peepholeOptimizer.emitAssembly(fixupInstructions);
+        }
+    }
+
+    private static int countInstructions(TackyGen.Program program) {
+        return program.functions().stream().mapToInt(function -> function.body().size()).sum();
+    }
+
+    private static int countInstructions(Codegen.Program program) {
+        return program.functions().stream().mapToInt(function -> function.instructions().size()).sum();
     }
 
     private static String formatExpectedList(List<Lexer.LexemeType> expected) {
         return expected.stream().map(Lexer::getDescriptorValue).collect(Collectors.joining("', '", "'", "'"));
     }
 
-    private static CompileResult handleCodegenResult(CompileOptions compileOptions, String outputPath, Codegen.Program assembly) {
+    private static CompileResult handleCodegenResult(CompileOptions compileOptions, OutputTarget target, Codegen.Program assembly, CompileStats stats, PrintStream out) {
+        stats.count("assembly-instructions", countInstructions(assembly));
+
         if (compileOptions.codegen) {
-            System.out.println(assembly);
+            out.println(assembly);
 
             return new Success();
         }
 
-        new Emitter().emit(outputPath, assembly);
+        try (final var _ = stats.phase(compileOptions.builtinAssembler ? "assemble" : "emit")) {
+            switch (target) {
+                case FileTarget(String path) when compileOptions.builtinAssembler ->
+                        new ElfWriter().write(path, new Assembler().assemble(assembly));
+                case FileTarget(String path) -> new Emitter().emit(path, assembly);
+                case PipeTarget(WritableByteChannel channel) -> new Emitter().emit(channel, assembly);
+                case TackyTarget _ -> throw new IllegalStateException("Unexpected value: " + target);
+            }
+        }
 
         return new Success();
     }
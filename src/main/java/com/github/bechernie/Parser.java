@@ -1,13 +1,16 @@
 package com.github.bechernie;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 public class Parser {
 
-    public sealed interface Program {
+    public record Program(List<FunctionDefinition> functions) {
     }
 
-    public record FunctionDefinition(String name, Statement body) implements Program {
+    public record FunctionDefinition(String name, Statement body) {
     }
 
     public sealed interface Statement {
@@ -40,20 +43,26 @@ public class Parser {
     public record Error(List<Lexer.LexemeType> expected, Lexer.Lexeme actual) implements ParseResult {
     }
 
+    public record Redefinition(String name, Lexer.Lexeme definition) implements ParseResult {
+    }
+
     public record Success(Program program) implements ParseResult {
     }
 
+    private static final List<Lexer.LexemeType> EXPRESSION_START = List.of(Lexer.INT_KEYWORD, Lexer.MINUS, Lexer.OPEN_PARENTHESIS);
+    private static final List<Lexer.LexemeType> UNARY_OPERATORS = List.of(Lexer.MINUS, Lexer.BITWISE_COMPLEMENT);
+
     private static class ParseException extends RuntimeException {
 
         private final List<Lexer.LexemeType> expected;
         private final Lexer.Lexeme actual;
 
         public ParseException(Lexer.LexemeType expected, Lexer.Lexeme actual) {
-            this.expected = List.of(expected);
-            this.actual = actual;
+            this(List.of(expected), actual);
         }
 
         public ParseException(List<Lexer.LexemeType> expected, Lexer.Lexeme actual) {
+            super(null, null, false, false);
             this.expected = expected;
             this.actual = actual;
         }
@@ -68,91 +77,122 @@ public class Parser {
     }
 
     public ParseResult parseProgram(List<Lexer.Lexeme> lexemes) {
+        return parseProgram(TokenSource.of(lexemes));
+    }
+
+    public ParseResult parseProgram(TokenSource tokens) {
         try {
-            final var functionDefinition = parseFunction(lexemes);
-            expect(new Lexer.EOF(), functionDefinition.rest);
-            return new Success(functionDefinition.item);
+            final var functions = new ArrayList<FunctionDefinition>();
+            final var names = new HashSet<String>();
+            do {
+                final var definition = tokens.peek();
+                final var function = parseFunction(tokens);
+                if (!names.add(function.name())) {
+                    return new Redefinition(function.name(), definition);
+                }
+                functions.add(function);
+            } while (!(tokens.peekType() instanceof Lexer.EOF));
+            return new Success(new Program(functions));
         } catch (ParseException e) {
             return new Error(e.getExpected(), e.getActual());
         }
     }
 
-    private record Result<T>(T item, List<Lexer.Lexeme> rest) {
+    private FunctionDefinition parseFunction(TokenSource tokens) {
+        expect(Lexer.INT_KEYWORD, tokens);
+        final var identifier = parseIdentifier(tokens);
+        expect(Lexer.OPEN_PARENTHESIS, tokens);
+        expect(Lexer.VOID_KEYWORD, tokens);
+        expect(Lexer.CLOSE_PARENTHESIS, tokens);
+        expect(Lexer.OPEN_BRACE, tokens);
+        final var statement = parseStatement(tokens);
+        expect(Lexer.CLOSE_BRACE, tokens);
+        return new FunctionDefinition(identifier, statement);
     }
 
-    private Result<FunctionDefinition> parseFunction(List<Lexer.Lexeme> lexemes) {
-        var rest = expect(new Lexer.IntKeyword(), lexemes);
-        final var identifier = parseIdentifier(rest);
-        rest = expect(new Lexer.OpenParenthesis(), identifier.rest);
-        rest = expect(new Lexer.VoidKeyword(), rest);
-        rest = expect(new Lexer.CloseParenthesis(), rest);
-        rest = expect(new Lexer.OpenBrace(), rest);
-        final var statement = parseStatement(rest);
-        rest = expect(new Lexer.CloseBrace(), statement.rest);
-        return new Result<>(new FunctionDefinition(identifier.item, statement.item), rest);
+    private String parseIdentifier(TokenSource tokens) {
+        return switch (tokens.peekType()) {
+            case Lexer.Identifier(String value) -> {
+                tokens.advance();
+                yield value;
+            }
+            default -> throw new ParseException(new Lexer.Identifier(""), tokens.peek());
+        };
     }
 
-    private Result<String> parseIdentifier(List<Lexer.Lexeme> lexemes) {
-        final var actual = lexemes.getFirst();
-        return switch (actual.type()) {
-            case Lexer.Identifier(String value) -> new Result<>(value, lexemes.subList(1, lexemes.size()));
-            default -> throw new ParseException(new Lexer.Identifier(""), actual);
-        };
+    private Statement parseStatement(TokenSource tokens) {
+        expect(Lexer.RETURN_KEYWORD, tokens);
+        final var expression = parseExpression(tokens);
+        expect(Lexer.SEMICOLON, tokens);
+        return new Return(expression);
+    }
+
+    private sealed interface PendingExpression {
+    }
+
+    private record PendingUnary(UnaryOperator operator) implements PendingExpression {
     }
 
-    private Result<Statement> parseStatement(List<Lexer.Lexeme> lexemes) {
-        var rest = expect(new Lexer.ReturnKeyword(), lexemes);
-        final var expression = parseExpression(rest);
-        rest = expect(new Lexer.Semicolon(), expression.rest);
-        return new Result<>(new Return(expression.item), rest);
+    private record PendingParenthesis() implements PendingExpression {
     }
 
-    private Result<Expression> parseExpression(List<Lexer.Lexeme> lexemes) {
-        final var nextToken = peek(lexemes);
-        return switch (nextToken.type()) {
-            case Lexer.IntConstant _, Lexer.IntKeyword() -> parseInt(lexemes);
-            case Lexer.Minus(), Lexer.BitwiseComplement() -> {
-                final var operator = parseUnaryOperator(lexemes);
-                final var innerExpression = parseExpression(operator.rest);
-                yield new Result<>(new Unary(operator.item, innerExpression.item), innerExpression.rest);
+    private static final PendingParenthesis PENDING_PARENTHESIS = new PendingParenthesis();
+
+    private Expression parseExpression(TokenSource tokens) {
+        final var pending = new ArrayDeque<PendingExpression>();
+
+        Expression expression = null;
+        while (expression == null) {
+            if (tokens.peekIsIntConstant()) {
+                expression = parseInt(tokens);
+                continue;
             }
-            case Lexer.OpenParenthesis() -> {
-                final var openParenthesisRest = expect(new Lexer.OpenParenthesis(), lexemes);
-                final var innerExpression = parseExpression(openParenthesisRest);
-                final var closeParenthesisRest = expect(new Lexer.CloseParenthesis(), innerExpression.rest);
-                yield new Result<>(innerExpression.item, closeParenthesisRest);
+
+            switch (tokens.peekType()) {
+                case Lexer.IntKeyword() -> expression = parseInt(tokens);
+                case Lexer.Minus(), Lexer.BitwiseComplement() -> pending.push(new PendingUnary(parseUnaryOperator(tokens)));
+                case Lexer.OpenParenthesis() -> {
+                    expect(Lexer.OPEN_PARENTHESIS, tokens);
+                    pending.push(PENDING_PARENTHESIS);
+                }
+                default -> throw new ParseException(EXPRESSION_START, tokens.peek());
             }
-            default ->
-                    throw new ParseException(List.of(new Lexer.IntKeyword(), new Lexer.Minus(), new Lexer.OpenParenthesis()), nextToken);
-        };
-    }
+        }
 
-    private Result<UnaryOperator> parseUnaryOperator(List<Lexer.Lexeme> lexemes) {
-        final var token = lexemes.getFirst();
-        return switch (token.type()) {
-            case Lexer.Minus() -> new Result<>(new Negate(), lexemes.subList(1, lexemes.size()));
-            case Lexer.BitwiseComplement() -> new Result<>(new BitwiseComplement(), lexemes.subList(1, lexemes.size()));
-            default -> throw new ParseException(List.of(new Lexer.Minus(), new Lexer.BitwiseComplement()), token);
-        };
+        while (!pending.isEmpty()) {
+            switch (pending.pop()) {
+                case PendingUnary(UnaryOperator operator) -> expression = new Unary(operator, expression);
+                case PendingParenthesis() -> expect(Lexer.CLOSE_PARENTHESIS, tokens);
+            }
+        }
+
+        return expression;
     }
 
-    private Result<Expression> parseInt(List<Lexer.Lexeme> lexemes) {
-        final var actual = lexemes.getFirst();
-        return switch (actual.type()) {
-            case Lexer.IntConstant(int value) -> new Result<>(new Constant(value), lexemes.subList(1, lexemes.size()));
-            default -> throw new ParseException(new Lexer.IntConstant(0), actual);
+    private UnaryOperator parseUnaryOperator(TokenSource tokens) {
+        final UnaryOperator operator = switch (tokens.peekType()) {
+            case Lexer.Minus() -> new Negate();
+            case Lexer.BitwiseComplement() -> new BitwiseComplement();
+            default -> throw new ParseException(UNARY_OPERATORS, tokens.peek());
         };
+        tokens.advance();
+        return operator;
     }
 
-    private Lexer.Lexeme peek(List<Lexer.Lexeme> lexemes) {
-        return lexemes.getFirst();
+    private Expression parseInt(TokenSource tokens) {
+        if (!tokens.peekIsIntConstant()) {
+            throw new ParseException(new Lexer.IntConstant(0), tokens.peek());
+        }
+
+        final var value = tokens.peekIntConstant();
+        tokens.advance();
+        return new Constant(value);
     }
 
-    private List<Lexer.Lexeme> expect(Lexer.LexemeType expected, List<Lexer.Lexeme> lexemes) {
-        final var actual = lexemes.getFirst();
-        if (!actual.type().equals(expected)) {
-            throw new ParseException(expected, actual);
+    private void expect(Lexer.LexemeType expected, TokenSource tokens) {
+        if (!tokens.peekType().equals(expected)) {
+            throw new ParseException(expected, tokens.peek());
         }
-        return lexemes.subList(1, lexemes.size());
+        tokens.advance();
     }
 }
@@ -0,0 +1,120 @@
+package com.github.bechernie;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class PeepholeOptimizer {
+
+    private record Rule(String name, int window, Function<List<Codegen.Instruction>, List<Codegen.Instruction>> rewrite) {
+    }
+
+    private static final Codegen.Register R10 = new Codegen.Register(new Codegen.R10());
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("zero-allocation", 1, window -> switch (window.getFirst()) {
+                case Codegen.AllocateStack(int size) when size == 0 -> List.of();
+                default -> null;
+            }),
+            new Rule("self-move", 1, window -> switch (window.getFirst()) {
+                case Codegen.Mov(Codegen.Operand source, Codegen.Operand destination) when source.equals(destination) ->
+                        List.of();
+                default -> null;
+            }),
+            new Rule("immediate-unary", 2, window -> {
+                if (window.get(0) instanceof Codegen.Mov(Codegen.Imm(int value), Codegen.Operand destination)
+                        && window.get(1) instanceof Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand)
+                        && operand.equals(destination)) {
+                    return List.of(new Codegen.Mov(new Codegen.Imm(fold(operator, value)), destination));
+                }
+                return null;
+            }),
+            new Rule("scratch-forwarding", 2, window -> {
+                if (window.get(0) instanceof Codegen.Mov(Codegen.Operand source, Codegen.Operand scratch)
+                        && window.get(1) instanceof Codegen.Mov(Codegen.Operand scratchSource, Codegen.Operand destination)
+                        && scratch.equals(R10) && scratchSource.equals(R10)
+                        && !(source instanceof Codegen.Stack && destination instanceof Codegen.Stack)) {
+                    return List.of(new Codegen.Mov(source, destination));
+                }
+                return null;
+            }),
+            new Rule("immediate-forwarding", 2, window -> {
+                if (window.get(0) instanceof Codegen.Mov(Codegen.Imm immediate, Codegen.Operand destination)
+                        && window.get(1) instanceof Codegen.Mov(Codegen.Operand source, Codegen.Operand target)
+                        && source.equals(destination)) {
+                    return List.of(window.get(0), new Codegen.Mov(immediate, target));
+                }
+                return null;
+            }),
+            new Rule("redundant-reload", 2, window -> {
+                if (window.get(0) instanceof Codegen.Mov(Codegen.Operand source, Codegen.Operand destination)
+                        && window.get(1) instanceof Codegen.Mov(Codegen.Operand reloadSource, Codegen.Operand reloadDestination)
+                        && reloadSource.equals(destination) && reloadDestination.equals(source)) {
+                    return List.of(window.get(0));
+                }
+                return null;
+            }),
+            new Rule("overwritten-move", 2, window -> {
+                if (window.get(0) instanceof Codegen.Mov(Codegen.Operand _, Codegen.Operand destination)
+                        && window.get(1) instanceof Codegen.Mov(Codegen.Operand source, Codegen.Operand overwritten)
+                        && overwritten.equals(destination) && !source.equals(destination)) {
+                    return List.of(window.get(1));
+                }
+                return null;
+            })
+    );
+
+    private final Map<String, AtomicInteger> hitCounts = new LinkedHashMap<>();
+
+    public PeepholeOptimizer() {
+        RULES.forEach(rule -> hitCounts.put(rule.name(), new AtomicInteger()));
+    }
+
+    public Map<String, Integer> getHitCounts() {
+        final var counts = new LinkedHashMap<String, Integer>();
+        hitCounts.forEach((name, count) -> counts.put(name, count.get()));
+        return counts;
+    }
+
+    public Codegen.Function emitAssembly(Codegen.Function function) {
+        return new Codegen.Function(function.name(), optimize(function.instructions()));
+    }
+
+    private List<Codegen.Instruction> optimize(List<Codegen.Instruction> instructions) {
+        final var optimized = new ArrayList<Codegen.Instruction>(instructions.size());
+        final var pending = new ArrayDeque<Codegen.Instruction>();
+        var next = 0;
+
+        while (!pending.isEmpty() || next < instructions.size()) {
+            optimized.add(pending.isEmpty() ? instructions.get(next++) : pending.pop());
+
+            for (final var rule : RULES) {
+                if (optimized.size() < rule.window()) {
+                    continue;
+                }
+
+                final var window = optimized.subList(optimized.size() - rule.window(), optimized.size());
+                final var replacement = rule.rewrite().apply(window);
+                if (replacement != null) {
+                    hitCounts.get(rule.name()).incrementAndGet();
+                    window.clear();
+                    replacement.reversed().forEach(pending::push);
+                    break;
+                }
+            }
+        }
+
+        return optimized;
+    }
+
+    private static int fold(Codegen.UnaryOperator operator, int value) {
+        return switch (operator) {
+            case Codegen.Neg _ -> -value;
+            case Codegen.Not _ -> ~value;
+        };
+    }
+}
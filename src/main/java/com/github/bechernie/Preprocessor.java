@@ -0,0 +1,964 @@
+package com.github.bechernie;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class Preprocessor {
+
+    public sealed interface PreprocessResult {
+    }
+
+    public record Success(CharSequence text, Set<Path> files) implements PreprocessResult {
+    }
+
+    public record Error(Path file, int line, String message) implements PreprocessResult {
+    }
+
+    public record Unsupported(Path file, int line, String feature) implements PreprocessResult {
+    }
+
+    private static final List<Path> SYSTEM_INCLUDE_DIRECTORIES = List.of(
+            Path.of("/usr/local/include"),
+            Path.of("/usr/include/x86_64-linux-gnu"),
+            Path.of("/usr/include")
+    );
+
+    private static final int MAX_INCLUDE_DEPTH = 200;
+
+    private static final Set<String> THREE_CHAR_PUNCTUATORS = Set.of("...", "<<=", ">>=");
+
+    private static final Set<String> TWO_CHAR_PUNCTUATORS = Set.of(
+            "->", "++", "--", "<<", ">>", "<=", ">=", "==", "!=", "&&", "||",
+            "*=", "/=", "%=", "+=", "-=", "&=", "^=", "|=", "##"
+    );
+
+    private static final Map<String, String> PREDEFINED_MACROS = Map.ofEntries(
+            Map.entry("__STDC__", "1"),
+            Map.entry("__STDC_HOSTED__", "1"),
+            Map.entry("__STDC_VERSION__", "201710L"),
+            Map.entry("__x86_64__", "1"),
+            Map.entry("__x86_64", "1"),
+            Map.entry("__linux__", "1"),
+            Map.entry("__linux", "1"),
+            Map.entry("__unix__", "1"),
+            Map.entry("__unix", "1"),
+            Map.entry("__LP64__", "1"),
+            Map.entry("_LP64", "1"),
+            Map.entry("__CHAR_BIT__", "8"),
+            Map.entry("__SIZEOF_INT__", "4"),
+            Map.entry("__SIZEOF_LONG__", "8"),
+            Map.entry("__SIZEOF_POINTER__", "8"),
+            Map.entry("__ORDER_LITTLE_ENDIAN__", "1234"),
+            Map.entry("__ORDER_BIG_ENDIAN__", "4321"),
+            Map.entry("__BYTE_ORDER__", "__ORDER_LITTLE_ENDIAN__")
+    );
+
+    private enum Kind {
+        IDENTIFIER, NUMBER, STRING, CHARACTER, PUNCTUATOR, OTHER
+    }
+
+    private record Token(String text, Kind kind, int line, boolean spaceBefore, Set<String> hideSet, boolean expanded) {
+
+        boolean is(String value) {
+            return kind != Kind.STRING && kind != Kind.CHARACTER && text.equals(value);
+        }
+
+        Token withSpaceBefore(boolean value) {
+            return new Token(text, kind, line, value, hideSet, expanded);
+        }
+    }
+
+    private record Line(String text, int number, int physicalLines) {
+    }
+
+    private sealed interface Macro {
+    }
+
+    private record ObjectMacro(List<Token> body) implements Macro {
+    }
+
+    private record FunctionMacro(List<String> parameters, List<Token> body) implements Macro {
+    }
+
+    private record LineMacro() implements Macro {
+    }
+
+    private record FileMacro() implements Macro {
+    }
+
+    private record Conditional(boolean parentActive, boolean active, boolean taken, boolean seenElse) {
+    }
+
+    private static class Source {
+
+        private final Path path;
+        private String name;
+        private int lineOffset = 0;
+
+        Source(Path path) {
+            this.path = path;
+            this.name = path.toString();
+        }
+    }
+
+    private static class PreprocessException extends RuntimeException {
+
+        private final PreprocessResult result;
+
+        PreprocessException(PreprocessResult result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+    private final List<Path> includeDirectories;
+    private final Map<String, Macro> macros = new HashMap<>();
+    private final Set<Path> files = new LinkedHashSet<>();
+    private final Set<Path> onceFiles = new HashSet<>();
+    private final StringBuilder output = new StringBuilder();
+
+    private Source source;
+    private int currentLine;
+
+    public Preprocessor() {
+        this(SYSTEM_INCLUDE_DIRECTORIES);
+    }
+
+    public Preprocessor(List<Path> includeDirectories) {
+        this.includeDirectories = includeDirectories;
+
+        PREDEFINED_MACROS.forEach((name, value) -> macros.put(name, new ObjectMacro(tokenize(value, 0))));
+        macros.put("__LINE__", new LineMacro());
+        macros.put("__FILE__", new FileMacro());
+    }
+
+    public PreprocessResult preprocess(Path file) throws IOException {
+        try {
+            processFile(file.toAbsolutePath().normalize(), 0);
+            return new Success(output, files);
+        } catch (PreprocessException e) {
+            return e.result;
+        }
+    }
+
+    private void processFile(Path path, int depth) throws IOException {
+        if (depth > MAX_INCLUDE_DEPTH) {
+            throw error("#include nested too deeply");
+        }
+        if (onceFiles.contains(path)) {
+            return;
+        }
+        files.add(path);
+
+        final var includer = source;
+        final var includerLine = currentLine;
+        source = new Source(path);
+
+        final var lines = splitLines(Files.readString(path));
+        final var conditionals = new ArrayDeque<Conditional>();
+
+        for (var index = 0; index < lines.size(); index++) {
+            final var line = lines.get(index);
+            currentLine = line.number() + source.lineOffset;
+
+            final var tokens = tokenize(line.text(), currentLine);
+            var physicalLines = line.physicalLines();
+
+            if (isDirective(tokens)) {
+                handleDirective(tokens, conditionals, depth);
+            } else if (isActive(conditionals)) {
+                final var text = new ArrayList<>(tokens);
+                while (hasUnterminatedInvocation(text) && index + 1 < lines.size()) {
+                    final var nextLine = lines.get(index + 1);
+                    final var nextTokens = tokenize(nextLine.text(), nextLine.number() + source.lineOffset);
+                    if (isDirective(nextTokens)) {
+                        break;
+                    }
+                    index++;
+                    physicalLines += nextLine.physicalLines();
+                    nextTokens.replaceAll(token -> token.withSpaceBefore(true));
+                    text.addAll(nextTokens);
+                }
+                write(leadingSpaces(line.text()), expand(text));
+            }
+
+            output.repeat('\n', physicalLines);
+        }
+
+        if (!conditionals.isEmpty()) {
+            throw error("unterminated conditional directive");
+        }
+
+        source = includer;
+        currentLine = includerLine;
+    }
+
+    private static List<Line> splitLines(String program) {
+        final var lines = new ArrayList<Line>();
+        final var text = new StringBuilder();
+        final var length = program.length();
+
+        var firstLine = 1;
+        var lineNumber = 1;
+        var position = 0;
+
+        while (position < length) {
+            final var currentChar = program.charAt(position);
+
+            if (currentChar == '\\' && isNewline(program, position + 1)) {
+                position = skipNewline(program, position + 1);
+                lineNumber++;
+            } else if (isNewline(program, position)) {
+                lines.add(new Line(text.toString(), firstLine, lineNumber - firstLine + 1));
+                text.setLength(0);
+                position = skipNewline(program, position);
+                lineNumber++;
+                firstLine = lineNumber;
+            } else if (currentChar == '/' && position + 1 < length && program.charAt(position + 1) == '/') {
+                while (position < length && !isNewline(program, position)) {
+                    if (program.charAt(position) == '\\' && isNewline(program, position + 1)) {
+                        position = skipNewline(program, position + 1);
+                        lineNumber++;
+                    } else {
+                        position++;
+                    }
+                }
+                text.append(' ');
+            } else if (currentChar == '/' && position + 1 < length && program.charAt(position + 1) == '*') {
+                position += 2;
+                while (position < length && !(program.charAt(position) == '*' && position + 1 < length && program.charAt(position + 1) == '/')) {
+                    if (program.charAt(position) == '\n') {
+                        lineNumber++;
+                    }
+                    position++;
+                }
+                position += 2;
+                text.append(' ');
+            } else if (currentChar == '"' || currentChar == '\'') {
+                text.append(currentChar);
+                position++;
+                while (position < length && program.charAt(position) != currentChar && !isNewline(program, position)) {
+                    if (program.charAt(position) == '\\' && isNewline(program, position + 1)) {
+                        position = skipNewline(program, position + 1);
+                        lineNumber++;
+                    } else if (program.charAt(position) == '\\' && position + 1 < length) {
+                        text.append(program, position, position + 2);
+                        position += 2;
+                    } else {
+                        text.append(program.charAt(position));
+                        position++;
+                    }
+                }
+                if (position < length && program.charAt(position) == currentChar) {
+                    text.append(currentChar);
+                    position++;
+                }
+            } else {
+                text.append(currentChar);
+                position++;
+            }
+        }
+
+        if (!text.isEmpty()) {
+            lines.add(new Line(text.toString(), firstLine, lineNumber - firstLine + 1));
+        }
+
+        return lines;
+    }
+
+    private static boolean isNewline(String program, int position) {
+        return position < program.length() && (program.charAt(position) == '\n'
+                || (program.charAt(position) == '\r' && position + 1 < program.length() && program.charAt(position + 1) == '\n'));
+    }
+
+    private static int skipNewline(String program, int position) {
+        return program.charAt(position) == '\r' ? position + 2 : position + 1;
+    }
+
+    private static int leadingSpaces(String text) {
+        var count = 0;
+        while (count < text.length() && isSpace(text.charAt(count))) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<Token> tokenize(String text, int line) {
+        final var tokens = new ArrayList<Token>();
+        final var length = text.length();
+
+        var position = 0;
+        var spaceBefore = false;
+
+        while (position < length) {
+            final var currentChar = text.charAt(position);
+
+            if (isSpace(currentChar)) {
+                spaceBefore = true;
+                position++;
+                continue;
+            }
+
+            final var start = position;
+            final Kind kind;
+
+            if (isIdentifierStart(currentChar)) {
+                while (position < length && isIdentifierPart(text.charAt(position))) {
+                    position++;
+                }
+                kind = Kind.IDENTIFIER;
+            } else if (isDigit(currentChar) || (currentChar == '.' && position + 1 < length && isDigit(text.charAt(position + 1)))) {
+                position++;
+                while (position < length) {
+                    final var numberChar = text.charAt(position);
+                    if ("eEpP".indexOf(numberChar) >= 0 && position + 1 < length && "+-".indexOf(text.charAt(position + 1)) >= 0) {
+                        position += 2;
+                    } else if (isIdentifierPart(numberChar) || numberChar == '.') {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+                kind = Kind.NUMBER;
+            } else if (currentChar == '"' || currentChar == '\'') {
+                position++;
+                while (position < length && text.charAt(position) != currentChar) {
+                    position += text.charAt(position) == '\\' ? 2 : 1;
+                }
+                position = Math.min(position + 1, length);
+                kind = currentChar == '"' ? Kind.STRING : Kind.CHARACTER;
+            } else if (position + 3 <= length && THREE_CHAR_PUNCTUATORS.contains(text.substring(position, position + 3))) {
+                position += 3;
+                kind = Kind.PUNCTUATOR;
+            } else if (position + 2 <= length && TWO_CHAR_PUNCTUATORS.contains(text.substring(position, position + 2))) {
+                position += 2;
+                kind = Kind.PUNCTUATOR;
+            } else {
+                position++;
+                kind = "!%&()*+,-./:;<=>?[]^{|}~#".indexOf(currentChar) >= 0 ? Kind.PUNCTUATOR : Kind.OTHER;
+            }
+
+            tokens.add(new Token(text.substring(start, position), kind, line, spaceBefore, Set.of(), false));
+            spaceBefore = false;
+        }
+
+        return tokens;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\u000B' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static boolean isDirective(List<Token> tokens) {
+        return !tokens.isEmpty() && tokens.getFirst().is("#");
+    }
+
+    private static boolean isActive(Deque<Conditional> conditionals) {
+        return conditionals.isEmpty() || conditionals.peek().active();
+    }
+
+    private void handleDirective(List<Token> tokens, Deque<Conditional> conditionals, int depth) throws IOException {
+        if (tokens.size() == 1) {
+            return;
+        }
+
+        final var name = tokens.get(1).text();
+        final var arguments = tokens.subList(2, tokens.size());
+
+        switch (name) {
+            case "if" -> {
+                final var parentActive = isActive(conditionals);
+                final var value = parentActive && evaluate(arguments) != 0;
+                conditionals.push(new Conditional(parentActive, value, value, false));
+                return;
+            }
+            case "ifdef", "ifndef" -> {
+                final var parentActive = isActive(conditionals);
+                final var value = parentActive && macros.containsKey(expectMacroName(arguments)) == name.equals("ifdef");
+                conditionals.push(new Conditional(parentActive, value, value, false));
+                return;
+            }
+            case "elif" -> {
+                final var conditional = popConditional(conditionals, name);
+                if (!conditional.parentActive() || conditional.taken()) {
+                    conditionals.push(new Conditional(conditional.parentActive(), false, conditional.taken(), false));
+                } else {
+                    final var value = evaluate(arguments) != 0;
+                    conditionals.push(new Conditional(true, value, value, false));
+                }
+                return;
+            }
+            case "else" -> {
+                final var conditional = popConditional(conditionals, name);
+                final var active = conditional.parentActive() && !conditional.taken();
+                conditionals.push(new Conditional(conditional.parentActive(), active, true, true));
+                return;
+            }
+            case "endif" -> {
+                popConditional(conditionals, name);
+                return;
+            }
+            default -> {
+                // Every other directive only applies in active groups
+            }
+        }
+
+        if (!isActive(conditionals)) {
+            return;
+        }
+
+        switch (name) {
+            case "define" -> define(arguments);
+            case "undef" -> macros.remove(expectMacroName(arguments));
+            case "include" -> include(arguments, depth);
+            case "line" -> line(arguments);
+            case "error" -> throw error("#error" + joinTokens(arguments));
+            case "warning" -> {
+                // Diagnostics only, nothing to emit
+            }
+            case "pragma" -> {
+                if (arguments.size() == 1 && arguments.getFirst().is("once")) {
+                    onceFiles.add(source.path);
+                } else {
+                    throw unsupported("#pragma " + joinTokens(arguments).strip());
+                }
+            }
+            case "include_next", "import", "ident", "sccs", "assert", "unassert" -> throw unsupported("#" + name);
+            default -> throw error("invalid preprocessing directive #" + name);
+        }
+    }
+
+    private Conditional popConditional(Deque<Conditional> conditionals, String directive) {
+        if (conditionals.isEmpty()) {
+            throw error("#" + directive + " without #if");
+        }
+        final var conditional = conditionals.pop();
+        if (conditional.seenElse() && !directive.equals("endif")) {
+            throw error("#" + directive + " after #else");
+        }
+        return conditional;
+    }
+
+    private String expectMacroName(List<Token> arguments) {
+        if (arguments.isEmpty() || arguments.getFirst().kind() != Kind.IDENTIFIER) {
+            throw error("macro names must be identifiers");
+        }
+        return arguments.getFirst().text();
+    }
+
+    private void define(List<Token> arguments) {
+        final var name = expectMacroName(arguments);
+        if (name.equals("defined")) {
+            throw error("\"defined\" cannot be used as a macro name");
+        }
+
+        if (arguments.size() > 1 && arguments.get(1).is("(") && !arguments.get(1).spaceBefore()) {
+            final var parameters = new ArrayList<String>();
+            var position = 2;
+
+            if (position < arguments.size() && arguments.get(position).is(")")) {
+                position++;
+            } else {
+                while (true) {
+                    if (position >= arguments.size()) {
+                        throw error("missing ')' in macro parameter list");
+                    }
+                    final var parameter = arguments.get(position);
+                    if (parameter.is("...")) {
+                        throw unsupported("variadic macros");
+                    }
+                    if (parameter.kind() != Kind.IDENTIFIER || parameters.contains(parameter.text())) {
+                        throw error("invalid macro parameter '" + parameter.text() + "'");
+                    }
+                    parameters.add(parameter.text());
+                    position++;
+
+                    if (position < arguments.size() && arguments.get(position).is(")")) {
+                        position++;
+                        break;
+                    }
+                    if (position >= arguments.size() || !arguments.get(position).is(",")) {
+                        throw error("expected ',' or ')' in macro parameter list");
+                    }
+                    position++;
+                }
+            }
+
+            final var body = macroBody(arguments.subList(position, arguments.size()));
+            if (body.stream().anyMatch(token -> token.is("#"))) {
+                throw unsupported("stringizing in macro bodies");
+            }
+            macros.put(name, new FunctionMacro(parameters, body));
+        } else {
+            macros.put(name, new ObjectMacro(macroBody(arguments.subList(1, arguments.size()))));
+        }
+    }
+
+    private List<Token> macroBody(List<Token> tokens) {
+        if (tokens.stream().anyMatch(token -> token.is("##"))) {
+            throw unsupported("token pasting in macro bodies");
+        }
+        final var body = new ArrayList<>(tokens);
+        if (!body.isEmpty()) {
+            body.set(0, body.getFirst().withSpaceBefore(false));
+        }
+        return body;
+    }
+
+    private void include(List<Token> arguments, int depth) throws IOException {
+        var tokens = arguments;
+        if (!tokens.isEmpty() && tokens.getFirst().kind() == Kind.IDENTIFIER) {
+            tokens = expand(tokens);
+        }
+
+        final String name;
+        final boolean quoted;
+        if (tokens.size() == 1 && tokens.getFirst().kind() == Kind.STRING) {
+            final var text = tokens.getFirst().text();
+            name = text.substring(1, text.length() - 1);
+            quoted = true;
+        } else if (tokens.size() >= 3 && tokens.getFirst().is("<") && tokens.getLast().is(">")) {
+            final var text = new StringBuilder();
+            tokens.subList(1, tokens.size() - 1).forEach(token -> text.append(token.spaceBefore() && !text.isEmpty() ? " " : "").append(token.text()));
+            name = text.toString();
+            quoted = false;
+        } else {
+            throw error("#include expects \"FILENAME\" or <FILENAME>");
+        }
+
+        final var candidates = new ArrayList<Path>();
+        if (quoted) {
+            candidates.add(source.path.resolveSibling(name));
+        }
+        includeDirectories.forEach(directory -> candidates.add(directory.resolve(name)));
+
+        for (final var candidate : candidates) {
+            if (Files.isRegularFile(candidate)) {
+                processFile(candidate.toAbsolutePath().normalize(), depth + 1);
+                return;
+            }
+        }
+
+        if (quoted) {
+            throw error(name + ": No such file or directory");
+        }
+        throw unsupported("#include <" + name + "> outside of the known system directories");
+    }
+
+    private void line(List<Token> arguments) {
+        final var tokens = expand(arguments);
+        if (tokens.isEmpty() || tokens.getFirst().kind() != Kind.NUMBER || !tokens.getFirst().text().chars().allMatch(Character::isDigit)) {
+            throw error("#line directive requires a positive integer argument");
+        }
+
+        final int number;
+        try {
+            number = Integer.parseInt(tokens.getFirst().text());
+        } catch (NumberFormatException e) {
+            throw error("line number out of range");
+        }
+
+        if (tokens.size() > 1) {
+            final var name = tokens.get(1).text();
+            if (tokens.get(1).kind() != Kind.STRING || tokens.size() > 2) {
+                throw error("invalid filename in #line directive");
+            }
+            source.name = name.substring(1, name.length() - 1);
+        }
+
+        source.lineOffset += number - (currentLine + 1);
+    }
+
+    private boolean hasUnterminatedInvocation(List<Token> tokens) {
+        for (var i = 0; i < tokens.size(); i++) {
+            final var token = tokens.get(i);
+            if (token.kind() != Kind.IDENTIFIER || !(macros.get(token.text()) instanceof FunctionMacro)) {
+                continue;
+            }
+            if (i + 1 == tokens.size()) {
+                return true;
+            }
+            if (!tokens.get(i + 1).is("(")) {
+                continue;
+            }
+
+            var nesting = 0;
+            var closed = false;
+            for (var j = i + 1; j < tokens.size() && !closed; j++) {
+                if (tokens.get(j).is("(")) {
+                    nesting++;
+                } else if (tokens.get(j).is(")")) {
+                    nesting--;
+                    closed = nesting == 0;
+                }
+            }
+            if (!closed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Token> expand(List<Token> tokens) {
+        final var input = new ArrayDeque<>(tokens);
+        final var result = new ArrayList<Token>();
+
+        while (!input.isEmpty()) {
+            final var token = input.pop();
+            final var macro = token.kind() == Kind.IDENTIFIER ? macros.get(token.text()) : null;
+
+            if (macro == null || token.hideSet().contains(token.text())) {
+                result.add(token);
+                continue;
+            }
+
+            switch (macro) {
+                case LineMacro() ->
+                        result.add(new Token(Integer.toString(token.line()), Kind.NUMBER, token.line(), token.spaceBefore(), token.hideSet(), true));
+                case FileMacro() ->
+                        result.add(new Token("\"" + source.name + "\"", Kind.STRING, token.line(), token.spaceBefore(), token.hideSet(), true));
+                case ObjectMacro(List<Token> body) ->
+                        pushAll(input, substitute(body, List.of(), List.of(), hideSet(token.hideSet(), token.text()), token));
+                case FunctionMacro(List<String> parameters, List<Token> body) -> {
+                    if (input.isEmpty() || !input.peek().is("(")) {
+                        result.add(token);
+                        continue;
+                    }
+                    input.pop();
+
+                    final var arguments = new ArrayList<List<Token>>();
+                    var current = new ArrayList<Token>();
+                    var nesting = 0;
+                    Token closing = null;
+
+                    while (closing == null) {
+                        if (input.isEmpty()) {
+                            throw error("unterminated argument list invoking macro \"" + token.text() + "\"");
+                        }
+                        final var argumentToken = input.pop();
+                        if (argumentToken.is(")") && nesting == 0) {
+                            closing = argumentToken;
+                        } else if (argumentToken.is(",") && nesting == 0) {
+                            arguments.add(current);
+                            current = new ArrayList<>();
+                        } else {
+                            if (argumentToken.is("(")) {
+                                nesting++;
+                            } else if (argumentToken.is(")")) {
+                                nesting--;
+                            }
+                            current.add(argumentToken);
+                        }
+                    }
+                    arguments.add(current);
+
+                    if (parameters.isEmpty() && arguments.size() == 1 && arguments.getFirst().isEmpty()) {
+                        arguments.clear();
+                    }
+                    if (arguments.size() != parameters.size()) {
+                        throw error("macro \"" + token.text() + "\" requires " + parameters.size() + " arguments, but " + arguments.size() + " given");
+                    }
+
+                    final var hideSet = new HashSet<>(token.hideSet());
+                    hideSet.retainAll(closing.hideSet());
+                    hideSet.add(token.text());
+
+                    pushAll(input, substitute(body, parameters, arguments.stream().map(this::expand).toList(), hideSet, token));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static Set<String> hideSet(Set<String> hideSet, String name) {
+        final var result = new HashSet<>(hideSet);
+        result.add(name);
+        return result;
+    }
+
+    private static List<Token> substitute(List<Token> body, List<String> parameters, List<List<Token>> arguments, Set<String> hideSet, Token invocation) {
+        final var result = new ArrayList<Token>();
+
+        for (final var bodyToken : body) {
+            final var parameter = bodyToken.kind() == Kind.IDENTIFIER ? parameters.indexOf(bodyToken.text()) : -1;
+            final var replacement = parameter >= 0 ? arguments.get(parameter) : List.of(bodyToken);
+
+            for (var i = 0; i < replacement.size(); i++) {
+                final var token = replacement.get(i);
+                final var tokenHideSet = new HashSet<>(token.hideSet());
+                tokenHideSet.addAll(hideSet);
+                final var tokenSpaceBefore = i == 0 ? bodyToken.spaceBefore() : token.spaceBefore();
+                final var tokenLine = parameter >= 0 ? token.line() : invocation.line();
+                result.add(new Token(token.text(), token.kind(), tokenLine, tokenSpaceBefore, tokenHideSet, true));
+            }
+        }
+
+        if (!result.isEmpty()) {
+            result.set(0, result.getFirst().withSpaceBefore(invocation.spaceBefore()));
+        }
+
+        return result;
+    }
+
+    private static void pushAll(Deque<Token> input, List<Token> tokens) {
+        for (var i = tokens.size() - 1; i >= 0; i--) {
+            input.push(tokens.get(i));
+        }
+    }
+
+    private void write(int indentation, List<Token> tokens) {
+        Token previous = null;
+        for (final var token : tokens) {
+            if (previous == null) {
+                output.repeat(' ', indentation);
+            } else if (token.spaceBefore() || ((token.expanded() || previous.expanded()) && wouldPaste(previous, token))) {
+                output.append(' ');
+            }
+            output.append(token.text());
+            previous = token;
+        }
+    }
+
+    private static boolean wouldPaste(Token previous, Token next) {
+        final var last = previous.text().charAt(previous.text().length() - 1);
+        final var first = next.text().charAt(0);
+        return (isIdentifierPart(last) && (isIdentifierPart(first) || first == '.'))
+                || (last == '.' && isDigit(first))
+                || TWO_CHAR_PUNCTUATORS.contains("" + last + first);
+    }
+
+    private static String joinTokens(List<Token> tokens) {
+        final var text = new StringBuilder();
+        tokens.forEach(token -> text.append(' ').append(token.text()));
+        return text.toString();
+    }
+
+    private long evaluate(List<Token> tokens) {
+        final var withDefined = new ArrayList<Token>();
+
+        for (var i = 0; i < tokens.size(); i++) {
+            final var token = tokens.get(i);
+            if (token.kind() == Kind.IDENTIFIER && token.text().startsWith("__has_")) {
+                throw unsupported(token.text() + " in #if");
+            }
+            if (!token.is("defined")) {
+                withDefined.add(token);
+                continue;
+            }
+
+            final var parenthesized = i + 1 < tokens.size() && tokens.get(i + 1).is("(");
+            final var nameIndex = parenthesized ? i + 2 : i + 1;
+            if (nameIndex >= tokens.size() || tokens.get(nameIndex).kind() != Kind.IDENTIFIER
+                    || (parenthesized && (nameIndex + 1 >= tokens.size() || !tokens.get(nameIndex + 1).is(")")))) {
+                throw error("operator \"defined\" requires an identifier");
+            }
+
+            final var defined = macros.containsKey(tokens.get(nameIndex).text());
+            withDefined.add(new Token(defined ? "1" : "0", Kind.NUMBER, token.line(), token.spaceBefore(), Set.of(), false));
+            i = parenthesized ? nameIndex + 1 : nameIndex;
+        }
+
+        final var expanded = expand(withDefined);
+        for (final var token : expanded) {
+            if (token.kind() == Kind.IDENTIFIER && token.text().startsWith("__has_")) {
+                throw unsupported(token.text() + " in #if");
+            }
+        }
+
+        final var expression = new IfExpression(expanded);
+        final var value = expression.parseConditional();
+        if (!expression.atEnd()) {
+            throw error("missing binary operator before token \"" + expression.peek().text() + "\"");
+        }
+        return value;
+    }
+
+    private class IfExpression {
+
+        private final List<Token> tokens;
+        private int position = 0;
+        private boolean evaluated = true;
+
+        IfExpression(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        Token peek() {
+            return tokens.get(position);
+        }
+
+        private boolean accept(String text) {
+            if (!atEnd() && peek().is(text)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        long parseConditional() {
+            final var condition = parseBinary(0);
+            if (!accept("?")) {
+                return condition;
+            }
+            final var outer = evaluated;
+            evaluated = outer && condition != 0;
+            final var whenTrue = parseConditional();
+            if (!accept(":")) {
+                throw error("expected ':' in preprocessor conditional");
+            }
+            evaluated = outer && condition == 0;
+            final var whenFalse = parseConditional();
+            evaluated = outer;
+            return condition != 0 ? whenTrue : whenFalse;
+        }
+
+        private long parseBinary(int minimumPrecedence) {
+            var left = parseUnary();
+
+            while (!atEnd()) {
+                final var operator = peek().text();
+                final var precedence = precedence(peek());
+                if (precedence < minimumPrecedence || precedence < 0) {
+                    break;
+                }
+                position++;
+
+                final var outer = evaluated;
+                evaluated = outer && !(operator.equals("&&") && left == 0) && !(operator.equals("||") && left != 0);
+                final var right = parseBinary(precedence + 1);
+                evaluated = outer;
+
+                left = switch (operator) {
+                    case "*" -> left * right;
+                    case "/", "%" -> {
+                        if (right == 0) {
+                            if (evaluated) {
+                                throw error("division by zero in #if");
+                            }
+                            yield 0;
+                        }
+                        yield operator.equals("/") ? left / right : left % right;
+                    }
+                    case "+" -> left + right;
+                    case "-" -> left - right;
+                    case "<<" -> left << right;
+                    case ">>" -> left >> right;
+                    case "<" -> left < right ? 1 : 0;
+                    case "<=" -> left <= right ? 1 : 0;
+                    case ">" -> left > right ? 1 : 0;
+                    case ">=" -> left >= right ? 1 : 0;
+                    case "==" -> left == right ? 1 : 0;
+                    case "!=" -> left != right ? 1 : 0;
+                    case "&" -> left & right;
+                    case "^" -> left ^ right;
+                    case "|" -> left | right;
+                    case "&&" -> left != 0 && right != 0 ? 1 : 0;
+                    case "||" -> left != 0 || right != 0 ? 1 : 0;
+                    default -> throw new IllegalStateException("Unexpected value: " + operator);
+                };
+            }
+
+            return left;
+        }
+
+        private static int precedence(Token token) {
+            if (token.kind() != Kind.PUNCTUATOR) {
+                return -1;
+            }
+            return switch (token.text()) {
+                case "*", "/", "%" -> 10;
+                case "+", "-" -> 9;
+                case "<<", ">>" -> 8;
+                case "<", "<=", ">", ">=" -> 7;
+                case "==", "!=" -> 6;
+                case "&" -> 5;
+                case "^" -> 4;
+                case "|" -> 3;
+                case "&&" -> 2;
+                case "||" -> 1;
+                default -> -1;
+            };
+        }
+
+        private long parseUnary() {
+            if (atEnd()) {
+                throw error("#if with no expression");
+            }
+
+            final var token = tokens.get(position++);
+            return switch (token.kind()) {
+                case NUMBER -> parseNumber(token.text());
+                case IDENTIFIER -> 0;
+                case CHARACTER -> throw unsupported("character constants in #if");
+                default -> switch (token.text()) {
+                    case "+" -> parseUnary();
+                    case "-" -> -parseUnary();
+                    case "~" -> ~parseUnary();
+                    case "!" -> parseUnary() == 0 ? 1 : 0;
+                    case "(" -> {
+                        final var value = parseConditional();
+                        if (!accept(")")) {
+                            throw error("missing ')' in expression");
+                        }
+                        yield value;
+                    }
+                    default -> throw error("token \"" + token.text() + "\" is not valid in preprocessor expressions");
+                };
+            };
+        }
+
+        private long parseNumber(String text) {
+            var digits = text;
+            while (!digits.isEmpty() && "uUlL".indexOf(digits.charAt(digits.length() - 1)) >= 0) {
+                digits = digits.substring(0, digits.length() - 1);
+            }
+
+            try {
+                if (digits.startsWith("0x") || digits.startsWith("0X")) {
+                    return Long.parseUnsignedLong(digits.substring(2), 16);
+                }
+                if (digits.length() > 1 && digits.startsWith("0")) {
+                    return Long.parseUnsignedLong(digits.substring(1), 8);
+                }
+                return Long.parseUnsignedLong(digits);
+            } catch (NumberFormatException e) {
+                throw error("invalid integer constant \"" + text + "\" in #if");
+            }
+        }
+    }
+
+    private PreprocessException error(String message) {
+        return new PreprocessException(new Error(source.path, currentLine, message));
+    }
+
+    private PreprocessException unsupported(String feature) {
+        return new PreprocessException(new Unsupported(source.path, currentLine, feature));
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class RegisterAllocator {
+
+    private static final List<Codegen.Reg> ALLOCATABLE = List.of(
+            new Codegen.CX(),
+            new Codegen.DX(),
+            new Codegen.SI(),
+            new Codegen.DI(),
+            new Codegen.R8(),
+            new Codegen.R9(),
+            new Codegen.R11()
+    );
+
+    private static final class Interval {
+
+        private final int start;
+        private int end;
+        private Codegen.Operand location;
+
+        Interval(int start) {
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    private final IntIntMap intervalIndexes = new IntIntMap();
+
+    private final List<Interval> intervals = new ArrayList<>();
+
+    private final List<Interval> spilled = new ArrayList<>();
+
+    private final FrameLayout frameLayout = new FrameLayout();
+
+    public ReplacePseudo.Result emitAssembly(Codegen.Function function) {
+        computeIntervals(function.instructions());
+        allocate();
+        layoutSpills();
+        return new ReplacePseudo.Result(new Codegen.Function(function.name(), convertInstructions(function.instructions())), frameLayout.frameSize());
+    }
+
+    private void computeIntervals(List<Codegen.Instruction> instructions) {
+        for (var i = 0; i < instructions.size(); i++) {
+            switch (instructions.get(i)) {
+                case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) -> {
+                    extend(operand1, i);
+                    extend(operand2, i);
+                }
+                case Codegen.Unary(Codegen.UnaryOperator _, Codegen.Operand operand) -> extend(operand, i);
+                case Codegen.AllocateStack _, Codegen.Ret _ -> {
+                    // No operands on purpose
+                }
+            }
+        }
+    }
+
+    private void extend(Codegen.Operand operand, int index) {
+        if (operand instanceof Codegen.Pseudo(int identifier)) {
+            final var intervalIndex = intervalIndexes.get(identifier, -1);
+            if (intervalIndex >= 0) {
+                intervals.get(intervalIndex).end = index;
+            } else {
+                intervalIndexes.put(identifier, intervals.size());
+                intervals.add(new Interval(index));
+            }
+        }
+    }
+
+    private void allocate() {
+        final var active = new ArrayList<Interval>(ALLOCATABLE.size());
+        final var free = new ArrayList<>(ALLOCATABLE);
+
+        for (final var interval : intervals) {
+            for (var i = active.size() - 1; i >= 0; i--) {
+                final var expired = active.get(i);
+                if (expired.end <= interval.start) {
+                    active.remove(i);
+                    free.add(((Codegen.Register) expired.location).reg());
+                }
+            }
+
+            if (!free.isEmpty()) {
+                interval.location = new Codegen.Register(free.removeLast());
+                active.add(interval);
+            } else {
+                var furthest = interval;
+                for (final var candidate : active) {
+                    if (candidate.end > furthest.end) {
+                        furthest = candidate;
+                    }
+                }
+
+                if (furthest != interval) {
+                    interval.location = furthest.location;
+                    active.remove(furthest);
+                    active.add(interval);
+                    spilled.add(furthest);
+                } else {
+                    spilled.add(interval);
+                }
+            }
+        }
+    }
+
+    private void layoutSpills() {
+        spilled.sort(Comparator.comparingInt(interval -> interval.start));
+        for (final var interval : spilled) {
+            interval.location = frameLayout.allocate(interval.start, interval.end);
+        }
+    }
+
+    private List<Codegen.Instruction> convertInstructions(List<Codegen.Instruction> instructions) {
+        return instructions.stream().map(this::convertInstruction).toList();
+    }
+
+    private Codegen.Instruction convertInstruction(Codegen.Instruction instruction) {
+        return switch (instruction) {
+            case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) ->
+                    new Codegen.Mov(convertOperand(operand1), convertOperand(operand2));
+            case Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand) ->
+                    new Codegen.Unary(operator, convertOperand(operand));
+            case Codegen.AllocateStack allocateStack -> allocateStack;
+            case Codegen.Ret ret -> ret;
+        };
+    }
+
+    private Codegen.Operand convertOperand(Codegen.Operand operand) {
+        if (operand instanceof Codegen.Pseudo(int identifier)) {
+            return intervals.get(intervalIndexes.get(identifier, -1)).location;
+        }
+        return operand;
+    }
+}
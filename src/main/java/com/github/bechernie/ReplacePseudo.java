@@ -1,58 +1,86 @@
 package com.github.bechernie;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class ReplacePseudo {
 
-    private static final Map<String, Integer> STACK_OFFSETS = new HashMap<>();
+    private final IntIntMap lastUses = new IntIntMap();
 
-    private int maxOffset = 0;
+    private final IntIntMap stackSlotIndexes = new IntIntMap();
 
-    public record Result(Codegen.Program program, int stackOffset) {
+    private final List<Codegen.Stack> stackSlots = new ArrayList<>();
+
+    private final FrameLayout frameLayout = new FrameLayout();
+
+    public record Result(Codegen.Function function, int stackOffset) {
     }
 
-    public Result emitAssembly(Codegen.Program program) {
-        return switch (program) {
-            case Codegen.Function(String name, List<Codegen.Instruction> instructions) ->
-                    new Result(new Codegen.Function(name, convertInstructions(instructions)), maxOffset);
-        };
+    public Result emitAssembly(Codegen.Function function) {
+        computeLastUses(function.instructions());
+        return new Result(new Codegen.Function(function.name(), convertInstructions(function.instructions())), frameLayout.frameSize());
+    }
+
+    private void computeLastUses(List<Codegen.Instruction> instructions) {
+        for (var i = 0; i < instructions.size(); i++) {
+            switch (instructions.get(i)) {
+                case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) -> {
+                    recordUse(operand1, i);
+                    recordUse(operand2, i);
+                }
+                case Codegen.Unary(Codegen.UnaryOperator _, Codegen.Operand operand) -> recordUse(operand, i);
+                case Codegen.AllocateStack _, Codegen.Ret _ -> {
+                    // No operands on purpose
+                }
+            }
+        }
+    }
+
+    private void recordUse(Codegen.Operand operand, int index) {
+        if (operand instanceof Codegen.Pseudo(int identifier)) {
+            lastUses.put(identifier, index);
+        }
     }
 
     private List<Codegen.Instruction> convertInstructions(List<Codegen.Instruction> instructions) {
-        return instructions.stream().map(this::convertInstruction).toList();
+        final var converted = new ArrayList<Codegen.Instruction>(instructions.size());
+        for (var i = 0; i < instructions.size(); i++) {
+            converted.add(convertInstruction(instructions.get(i), i));
+        }
+        return converted;
     }
 
-    private Codegen.Instruction convertInstruction(Codegen.Instruction instruction) {
+    private Codegen.Instruction convertInstruction(Codegen.Instruction instruction, int index) {
         return switch (instruction) {
             case Codegen.AllocateStack allocateStack -> allocateStack;
             case Codegen.Mov(Codegen.Operand operand1, Codegen.Operand operand2) -> {
-                if (operand1 instanceof Codegen.Pseudo(String identifier)) {
-                    operand1 = convertPseudoRegister(identifier);
+                if (operand1 instanceof Codegen.Pseudo(int identifier)) {
+                    operand1 = convertPseudoRegister(identifier, index);
                 }
-                if (operand2 instanceof Codegen.Pseudo(String identifier)) {
-                    operand2 = convertPseudoRegister(identifier);
+                if (operand2 instanceof Codegen.Pseudo(int identifier)) {
+                    operand2 = convertPseudoRegister(identifier, index);
                 }
                 yield new Codegen.Mov(operand1, operand2);
             }
             case Codegen.Ret ret -> ret;
             case Codegen.Unary(Codegen.UnaryOperator operator, Codegen.Operand operand) -> {
-                if (operand instanceof Codegen.Pseudo(String identifier)) {
-                    operand = convertPseudoRegister(identifier);
+                if (operand instanceof Codegen.Pseudo(int identifier)) {
+                    operand = convertPseudoRegister(identifier, index);
                 }
                 yield new Codegen.Unary(operator, operand);
             }
         };
     }
 
-    private Codegen.Operand convertPseudoRegister(String identifier) {
-        final var offset = STACK_OFFSETS.computeIfAbsent(identifier, _ -> {
-            final var currentOffset = maxOffset;
-            maxOffset += 4;
-            return -currentOffset;
-        });
+    private Codegen.Operand convertPseudoRegister(int identifier, int index) {
+        final var slotIndex = stackSlotIndexes.get(identifier, -1);
+        if (slotIndex >= 0) {
+            return stackSlots.get(slotIndex);
+        }
 
-        return new Codegen.Stack(offset);
+        final var stackSlot = frameLayout.allocate(index, lastUses.get(identifier, index));
+        stackSlotIndexes.put(identifier, stackSlots.size());
+        stackSlots.add(stackSlot);
+        return stackSlot;
     }
 }
@@ -0,0 +1,97 @@
+package com.github.bechernie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SymbolTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private final List<String> spellings = new ArrayList<>();
+    private final List<Lexer.LexemeType> types = new ArrayList<>();
+
+    public SymbolTable() {
+        add("int", Lexer.INT_KEYWORD);
+        add("void", Lexer.VOID_KEYWORD);
+        add("return", Lexer.RETURN_KEYWORD);
+    }
+
+    public int intern(String spelling) {
+        return intern(spelling.toCharArray(), spelling.length(), spelling.hashCode());
+    }
+
+    public int intern(char[] chars, int length, int hash) {
+        final var mask = slots.length - 1;
+        for (var slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final var id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(spellings.get(id), chars, length)) {
+                return id;
+            }
+        }
+
+        final var spelling = new String(chars, 0, length);
+        return add(spelling, new Lexer.Identifier(spelling));
+    }
+
+    public Lexer.LexemeType type(int id) {
+        return types.get(id);
+    }
+
+    public String spelling(int id) {
+        return spellings.get(id);
+    }
+
+    public int size() {
+        return spellings.size();
+    }
+
+    private int add(String spelling, Lexer.LexemeType type) {
+        final var id = spellings.size();
+        if (2 * (id + 1) > slots.length) {
+            resize();
+        }
+
+        final var hash = spelling.hashCode();
+        hashes[id] = hash;
+        spellings.add(spelling);
+        types.add(type);
+        insert(id, hash);
+        return id;
+    }
+
+    private void resize() {
+        slots = new int[slots.length * 2];
+        hashes = Arrays.copyOf(hashes, slots.length);
+        for (var id = 0; id < spellings.size(); id++) {
+            insert(id, hashes[id]);
+        }
+    }
+
+    private void insert(int id, int hash) {
+        final var mask = slots.length - 1;
+        var slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private static boolean matches(String spelling, char[] chars, int length) {
+        if (spelling.length() != length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (spelling.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.bechernie;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -7,10 +8,10 @@ public class TackyGen {
 
     private int counter = 0;
 
-    public sealed interface Program {
+    public record Program(List<Function> functions) {
     }
 
-    public record Function(String name, List<Instruction> body) implements Program {
+    public record Function(String name, List<Instruction> body) {
     }
 
     public sealed interface Instruction {
@@ -22,13 +23,16 @@ public class TackyGen {
     public record Unary(UnaryOperator operator, Val source, Val destination) implements Instruction {
     }
 
+    public record Copy(Val source, Val destination) implements Instruction {
+    }
+
     public sealed interface Val {
     }
 
     public record Constant(int value) implements Val {
     }
 
-    public record Var(String identifier) implements Val {
+    public record Var(int identifier) implements Val {
     }
 
     public sealed interface UnaryOperator {
@@ -41,9 +45,12 @@ public class TackyGen {
     }
 
     public Program emitTacky(Parser.Program program) {
-        return switch (program) {
-            case Parser.FunctionDefinition(String name, Parser.Statement body) -> new Function(name, emitTacky(body));
-        };
+        return new Program(program.functions().stream().map(this::emitTacky).toList());
+    }
+
+    private Function emitTacky(Parser.FunctionDefinition functionDefinition) {
+        counter = 0;
+        return new Function(functionDefinition.name(), emitTacky(functionDefinition.body()));
     }
 
     private List<Instruction> emitTacky(Parser.Statement statement) {
@@ -58,17 +65,28 @@ public class TackyGen {
     }
 
     private Val emitTacky(Parser.Expression expression, List<Instruction> instructions) {
-        return switch (expression) {
-            case Parser.Constant(int value) -> new Constant(value);
-            case Parser.Unary(Parser.UnaryOperator operator, Parser.Expression innerExpression) -> {
-                final var source = emitTacky(innerExpression, instructions);
-                final var destinationName = makeTemporary();
-                final var destination = new Var(destinationName);
-                final var tackyOperator = convertUnaryOperator(operator);
-                instructions.add(new Unary(tackyOperator, source, destination));
-                yield destination;
+        final var operators = new ArrayDeque<Parser.UnaryOperator>();
+
+        var current = expression;
+        Val source = null;
+        while (source == null) {
+            switch (current) {
+                case Parser.Constant(int value) -> source = new Constant(value);
+                case Parser.Unary(Parser.UnaryOperator operator, Parser.Expression innerExpression) -> {
+                    operators.push(operator);
+                    current = innerExpression;
+                }
             }
-        };
+        }
+
+        while (!operators.isEmpty()) {
+            final var destination = new Var(makeTemporary());
+            final var tackyOperator = convertUnaryOperator(operators.pop());
+            instructions.add(new Unary(tackyOperator, source, destination));
+            source = destination;
+        }
+
+        return source;
     }
 
     private UnaryOperator convertUnaryOperator(Parser.UnaryOperator operator) {
@@ -78,8 +96,7 @@ public class TackyGen {
         };
     }
 
-    private String makeTemporary() {
-        counter++;
-        return "tmp." + counter;
+    private int makeTemporary() {
+        return counter++;
     }
 }
@@ -0,0 +1,41 @@
+package com.github.bechernie;
+
+import java.util.List;
+
+public class TackyOptimizer {
+
+    private final List<TackyPass> passes;
+
+    public TackyOptimizer(int level) {
+        this.passes = level > 0
+                ? List.of(new ConstantFolding(), new CopyPropagation(), new DeadCodeElimination())
+                : List.of();
+    }
+
+    public TackyGen.Program optimize(TackyGen.Program program) {
+        return new TackyGen.Program(program.functions().stream().map(this::optimize).toList());
+    }
+
+    public TackyGen.Function optimize(TackyGen.Function function) {
+        return new TackyGen.Function(function.name(), optimize(function.body()));
+    }
+
+    private List<TackyGen.Instruction> optimize(List<TackyGen.Instruction> instructions) {
+        if (passes.isEmpty()) {
+            return instructions;
+        }
+
+        var current = instructions;
+        while (true) {
+            var next = current;
+            for (final var pass : passes) {
+                next = pass.apply(next);
+            }
+
+            if (next.equals(current)) {
+                return current;
+            }
+            current = next;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.bechernie;
+
+import java.util.List;
+
+public interface TackyPass {
+
+    List<TackyGen.Instruction> apply(List<TackyGen.Instruction> instructions);
+}
@@ -0,0 +1,181 @@
+package com.github.bechernie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class TackyReader {
+
+    public static class InvalidFormatException extends RuntimeException {
+
+        public InvalidFormatException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final TackyGen.Negate NEGATE = new TackyGen.Negate();
+    private static final TackyGen.BitwiseComplement BITWISE_COMPLEMENT = new TackyGen.BitwiseComplement();
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final InputStream in;
+    private final long length;
+    private long position;
+    private String[] identifiers;
+    private int remainingFunctions;
+
+    public TackyReader(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    public TackyReader(InputStream in, long length) {
+        this.in = in;
+        this.length = length;
+    }
+
+    public TackyGen.Program read() throws IOException {
+        if (!hasNextFunction()) {
+            throw new InvalidFormatException("expected at least one function");
+        }
+
+        final var functions = new ArrayList<TackyGen.Function>(Math.min(remainingFunctions, INITIAL_CAPACITY));
+        final var names = new HashSet<String>();
+        while (hasNextFunction()) {
+            final var function = nextFunction();
+            if (!names.add(function.name())) {
+                throw new InvalidFormatException("redefinition of " + function.name());
+            }
+            functions.add(function);
+        }
+
+        return new TackyGen.Program(functions);
+    }
+
+    public boolean hasNextFunction() throws IOException {
+        if (identifiers == null) {
+            readHeader();
+        }
+        return remainingFunctions > 0;
+    }
+
+    public TackyGen.Function nextFunction() throws IOException {
+        if (!hasNextFunction()) {
+            throw new InvalidFormatException("no more functions");
+        }
+
+        remainingFunctions--;
+
+        final var name = readIdentifier();
+        final var count = readCount("instruction count");
+        final var body = new ArrayList<TackyGen.Instruction>(Math.min(count, INITIAL_CAPACITY));
+        for (var i = 0; i < count; i++) {
+            body.add(readInstruction());
+        }
+
+        if (remainingFunctions == 0 && in.read() != -1) {
+            throw new InvalidFormatException("trailing bytes after the last function");
+        }
+
+        return new TackyGen.Function(name, body);
+    }
+
+    private void readHeader() throws IOException {
+        final var magic = in.readNBytes(TackyWriter.MAGIC.length);
+        position += magic.length;
+        if (!Arrays.equals(magic, TackyWriter.MAGIC)) {
+            throw new InvalidFormatException("not a TACKY file");
+        }
+
+        final var version = readVarint();
+        if (version != TackyWriter.VERSION) {
+            throw new InvalidFormatException("unsupported version " + version);
+        }
+
+        final var identifierCount = readCount("identifier count");
+        final var names = new ArrayList<String>(Math.min(identifierCount, INITIAL_CAPACITY));
+        for (var i = 0; i < identifierCount; i++) {
+            final var nameLength = readCount("identifier length");
+            final var bytes = in.readNBytes(nameLength);
+            position += bytes.length;
+            if (bytes.length != nameLength) {
+                throw new InvalidFormatException("unexpected end of file");
+            }
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        identifiers = names.toArray(String[]::new);
+        remainingFunctions = readCount("function count");
+    }
+
+    private TackyGen.Instruction readInstruction() throws IOException {
+        final var opcode = readVarint();
+        return switch (opcode) {
+            case TackyWriter.OPCODE_RETURN -> new TackyGen.Return(readVal());
+            case TackyWriter.OPCODE_UNARY -> new TackyGen.Unary(readUnaryOperator(), readVal(), readVal());
+            case TackyWriter.OPCODE_COPY -> new TackyGen.Copy(readVal(), readVal());
+            default -> throw new InvalidFormatException("unknown opcode " + opcode);
+        };
+    }
+
+    private TackyGen.UnaryOperator readUnaryOperator() throws IOException {
+        final var operator = readVarint();
+        return switch (operator) {
+            case TackyWriter.OPERATOR_NEGATE -> NEGATE;
+            case TackyWriter.OPERATOR_BITWISE_COMPLEMENT -> BITWISE_COMPLEMENT;
+            default -> throw new InvalidFormatException("unknown unary operator " + operator);
+        };
+    }
+
+    private TackyGen.Val readVal() throws IOException {
+        final var kind = readVarint();
+        return switch (kind) {
+            case TackyWriter.VAL_CONSTANT -> {
+                final var value = readVarint();
+                yield new TackyGen.Constant((value >>> 1) ^ -(value & 1));
+            }
+            case TackyWriter.VAL_VAR -> {
+                final var id = readVarint();
+                if (id < 0) {
+                    throw new InvalidFormatException("invalid temporary " + id);
+                }
+                yield new TackyGen.Var(id);
+            }
+            default -> throw new InvalidFormatException("unknown value kind " + kind);
+        };
+    }
+
+    private String readIdentifier() throws IOException {
+        final var index = readVarint();
+        if (index < 0 || index >= identifiers.length) {
+            throw new InvalidFormatException("unknown identifier " + index);
+        }
+        return identifiers[index];
+    }
+
+    private int readCount(String description) throws IOException {
+        final var count = readVarint();
+        if (count < 0 || count > length - position) {
+            throw new InvalidFormatException("invalid " + description + " " + count);
+        }
+        return count;
+    }
+
+    private int readVarint() throws IOException {
+        var value = 0;
+        for (var shift = 0; shift < 35; shift += 7) {
+            final var b = in.read();
+            if (b == -1) {
+                throw new InvalidFormatException("unexpected end of file");
+            }
+            position++;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidFormatException("malformed varint");
+    }
+}
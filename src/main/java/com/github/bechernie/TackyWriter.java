@@ -0,0 +1,123 @@
+package com.github.bechernie;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TackyWriter {
+
+    static final byte[] MAGIC = {'T', 'A', 'C', 'K'};
+    static final int VERSION = 1;
+
+    static final int OPCODE_RETURN = 0;
+    static final int OPCODE_UNARY = 1;
+    static final int OPCODE_COPY = 2;
+
+    static final int OPERATOR_NEGATE = 0;
+    static final int OPERATOR_BITWISE_COMPLEMENT = 1;
+
+    static final int VAL_CONSTANT = 0;
+    static final int VAL_VAR = 1;
+
+    private final Map<String, Integer> identifierIndexes = new HashMap<>();
+    private final List<String> identifiers = new ArrayList<>();
+
+    private OutputStream out;
+
+    public void write(String outputPath, TackyGen.Program program) {
+        try (final var outputStream = new BufferedOutputStream(Files.newOutputStream(Path.of(outputPath)))) {
+            write(outputStream, program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(OutputStream outputStream, TackyGen.Program program) throws IOException {
+        out = outputStream;
+
+        final var functions = program.functions();
+        functions.forEach(function -> intern(function.name()));
+
+        out.write(MAGIC);
+        writeVarint(VERSION);
+
+        writeVarint(identifiers.size());
+        for (final var identifier : identifiers) {
+            final var bytes = identifier.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(functions.size());
+        for (final var function : functions) {
+            writeVarint(identifierIndexes.get(function.name()));
+            writeVarint(function.body().size());
+            for (final var instruction : function.body()) {
+                writeInstruction(instruction);
+            }
+        }
+
+        out.flush();
+        out = null;
+    }
+
+    private void writeInstruction(TackyGen.Instruction instruction) throws IOException {
+        switch (instruction) {
+            case TackyGen.Return(TackyGen.Val val) -> {
+                writeVarint(OPCODE_RETURN);
+                writeVal(val);
+            }
+            case TackyGen.Unary(TackyGen.UnaryOperator operator, TackyGen.Val source, TackyGen.Val destination) -> {
+                writeVarint(OPCODE_UNARY);
+                writeVarint(switch (operator) {
+                    case TackyGen.Negate _ -> OPERATOR_NEGATE;
+                    case TackyGen.BitwiseComplement _ -> OPERATOR_BITWISE_COMPLEMENT;
+                });
+                writeVal(source);
+                writeVal(destination);
+            }
+            case TackyGen.Copy(TackyGen.Val source, TackyGen.Val destination) -> {
+                writeVarint(OPCODE_COPY);
+                writeVal(source);
+                writeVal(destination);
+            }
+        }
+    }
+
+    private void writeVal(TackyGen.Val val) throws IOException {
+        switch (val) {
+            case TackyGen.Constant(int value) -> {
+                writeVarint(VAL_CONSTANT);
+                writeVarint((value << 1) ^ (value >> 31));
+            }
+            case TackyGen.Var(int identifier) -> {
+                writeVarint(VAL_VAR);
+                writeVarint(identifier);
+            }
+        }
+    }
+
+    private void intern(String identifier) {
+        if (!identifierIndexes.containsKey(identifier)) {
+            identifierIndexes.put(identifier, identifiers.size());
+            identifiers.add(identifier);
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        var remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+}
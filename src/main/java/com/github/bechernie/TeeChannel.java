@@ -0,0 +1,43 @@
+package com.github.bechernie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class TeeChannel implements WritableByteChannel {
+
+    private final WritableByteChannel first;
+    private final WritableByteChannel second;
+
+    public TeeChannel(WritableByteChannel first, WritableByteChannel second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        final var copy = source.duplicate();
+        final var remaining = source.remaining();
+
+        while (source.hasRemaining()) {
+            first.write(source);
+        }
+        while (copy.hasRemaining()) {
+            second.write(copy);
+        }
+
+        return remaining;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return first.isOpen() && second.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (second) {
+            first.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.bechernie;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TokenBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final SymbolTable symbols;
+
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] columnStarts = new int[INITIAL_CAPACITY];
+    private int[] columnEnds = new int[INITIAL_CAPACITY];
+    private int[] payloads = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public TokenBuffer(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public void add(int kind, int line, int columnStart, int columnEnd, int payload) {
+        if (size == kinds.length) {
+            final var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columnStarts = Arrays.copyOf(columnStarts, capacity);
+            columnEnds = Arrays.copyOf(columnEnds, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        kinds[size] = kind;
+        lines[size] = line;
+        columnStarts[size] = columnStart;
+        columnEnds[size] = columnEnd;
+        payloads[size] = payload;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int kind(int index) {
+        return kinds[index];
+    }
+
+    public int payload(int index) {
+        return payloads[index];
+    }
+
+    public Lexer.LexemeType type(int index) {
+        return Lexer.type(kinds[index], payloads[index], symbols);
+    }
+
+    public Lexer.Lexeme get(int index) {
+        return new Lexer.Lexeme(type(index), lines[index], columnStarts[index], columnEnds[index]);
+    }
+
+    public List<Lexer.Lexeme> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Lexer.Lexeme get(int index) {
+                return TokenBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public class Cursor implements TokenSource {
+
+        private int position = 0;
+
+        @Override
+        public Lexer.Lexeme peek() {
+            return get(position);
+        }
+
+        @Override
+        public Lexer.LexemeType peekType() {
+            return type(position);
+        }
+
+        @Override
+        public boolean peekIsIntConstant() {
+            return kinds[position] == Lexer.KIND_INT_CONSTANT;
+        }
+
+        @Override
+        public int peekIntConstant() {
+            return payloads[position];
+        }
+
+        @Override
+        public void advance() {
+            if (position < size - 1) {
+                position++;
+            }
+        }
+
+        public int position() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.bechernie;
+
+import java.util.List;
+
+public interface TokenSource {
+
+    static TokenSource of(List<Lexer.Lexeme> lexemes) {
+        return new TokenSource() {
+
+            private int position = 0;
+
+            @Override
+            public Lexer.Lexeme peek() {
+                return lexemes.get(position);
+            }
+
+            @Override
+            public Lexer.LexemeType peekType() {
+                return lexemes.get(position).type();
+            }
+
+            @Override
+            public void advance() {
+                if (position < lexemes.size() - 1) {
+                    position++;
+                }
+            }
+        };
+    }
+
+    Lexer.Lexeme peek();
+
+    Lexer.LexemeType peekType();
+
+    default boolean peekIsIntConstant() {
+        return peekType() instanceof Lexer.IntConstant;
+    }
+
+    default int peekIntConstant() {
+        return ((Lexer.IntConstant) peekType()).value();
+    }
+
+    void advance();
+
+    default Lexer.Lexeme next() {
+        final var lexeme = peek();
+        advance();
+        return lexeme;
+    }
+}
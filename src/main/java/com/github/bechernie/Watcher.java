@@ -0,0 +1,167 @@
+package com.github.bechernie;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class Watcher {
+
+    private static final Duration DEBOUNCE = Duration.ofMillis(50);
+
+    private final CommandLine commandLine;
+    private final Path workingDirectory;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private final Map<Path, Fingerprints> units = new LinkedHashMap<>();
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+    private final Semaphore compilers = new Semaphore(1);
+
+    public Watcher(CommandLine commandLine, Path workingDirectory, PrintStream out, PrintStream err) {
+        this.commandLine = commandLine;
+        this.workingDirectory = workingDirectory;
+        this.out = out;
+        this.err = err;
+    }
+
+    public void watch() throws ParseException, IOException, InterruptedException {
+        if (commandLine.getArgs().length == 0) {
+            throw new ParseException("Missing file path");
+        }
+
+        final var compileOptions = Main.parseCompileOptions(commandLine);
+        final var cache = Main.createCache(commandLine, workingDirectory);
+
+        for (final var argument : commandLine.getArgs()) {
+            final var file = workingDirectory.resolve(argument).normalize();
+            units.put(file, new Fingerprints(file));
+        }
+
+        try (final var watchService = FileSystems.getDefault().newWatchService()) {
+            compile(units.keySet(), compileOptions, cache);
+            register(watchService);
+            out.println("Watching " + directories.size() + " directories for changes");
+
+            while (true) {
+                final var changed = new HashSet<Path>();
+
+                var key = watchService.take();
+                final var changedAt = System.nanoTime();
+
+                var overflow = false;
+                while (key != null) {
+                    overflow |= collect(key, changed);
+                    key = watchService.poll(DEBOUNCE.toMillis(), TimeUnit.MILLISECONDS);
+                }
+
+                final var affected = overflow
+                        ? units.keySet()
+                        : units.entrySet().stream()
+                        .filter(unit -> !Collections.disjoint(unit.getValue().getDependencies(), changed))
+                        .map(Map.Entry::getKey)
+                        .toList();
+
+                if (affected.isEmpty()) {
+                    continue;
+                }
+
+                compile(affected, compileOptions, cache);
+                register(watchService);
+                out.printf("Rebuild finished %.1f ms after the change%n", (System.nanoTime() - changedAt) / 1e6);
+            }
+        }
+    }
+
+    private void compile(Collection<Path> files, Main.CompileOptions compileOptions, CompilationCache cache) throws InterruptedException {
+        for (final var file : files) {
+            final var fingerprints = units.get(file);
+            fingerprints.begin();
+
+            final var start = System.nanoTime();
+            int exitCode;
+            try {
+                exitCode = Main.compileFile(file, compileOptions, cache, compilers, fingerprints, out, err, err);
+            } catch (IOException | RuntimeException e) {
+                err.println(e);
+                exitCode = 1;
+            }
+            final var elapsed = (System.nanoTime() - start) / 1e6;
+
+            final String outcome;
+            if (exitCode != 0) {
+                fingerprints.invalidate();
+                outcome = "failed";
+            } else if (fingerprints.getUnchangedStage() != null) {
+                outcome = "up to date, " + fingerprints.getUnchangedStage().getDescription() + " unchanged";
+            } else {
+                outcome = "compiled";
+            }
+
+            out.printf("%s: %s in %.1f ms%n", workingDirectory.relativize(file), outcome, elapsed);
+        }
+
+        if (cache != null && commandLine.hasOption("cache-stats")) {
+            Main.printCacheStats(cache, out);
+        }
+    }
+
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        final var directory = (Path) key.watchable();
+
+        var overflow = false;
+        for (final var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(directory);
+        }
+
+        return overflow;
+    }
+
+    private void register(WatchService watchService) throws IOException {
+        final var needed = units.values().stream()
+                .flatMap(fingerprints -> fingerprints.getDependencies().stream())
+                .map(Path::getParent)
+                .collect(Collectors.toSet());
+
+        final var iterator = directories.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final var directory = iterator.next();
+            if (!needed.contains(directory.getKey())) {
+                directory.getValue().cancel();
+                iterator.remove();
+            }
+        }
+
+        for (final var directory : needed) {
+            if (!directories.containsKey(directory) && Files.isDirectory(directory)) {
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+    }
+}
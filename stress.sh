@@ -0,0 +1,31 @@
+#!/bin/bash
+# Compiles and runs `int main(void) { return -(~(-(~(...0...)))); }` nested DEPTH levels deep.
+# Each `-(~(...))` pair adds one, so the program must exit with (DEPTH / 2) % 256.
+
+set -e
+
+DEPTH=${1:-1000000}
+PAIRS=$((DEPTH / 2))
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+{
+    printf 'int main(void) { return '
+    for ((i = 0; i < PAIRS; i++)); do printf -- '-(~('; done
+    printf '0'
+    for ((i = 0; i < PAIRS; i++)); do printf '))'; done
+    printf '; }\n'
+} > "$WORK_DIR/deep.c"
+
+START=$(date +%s%N)
+"$(dirname "$0")"/mycc.sh "${@:2}" "$WORK_DIR/deep.c"
+END=$(date +%s%N)
+
+set +e
+"$WORK_DIR/deep"
+ACTUAL=$?
+set -e
+
+EXPECTED=$((PAIRS % 256))
+echo "depth $((PAIRS * 2)): compiled in $(((END - START) / 1000000)) ms, exit code $ACTUAL (expected $EXPECTED)"
+[ "$ACTUAL" -eq "$EXPECTED" ]